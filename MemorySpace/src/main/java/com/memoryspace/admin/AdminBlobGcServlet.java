@@ -0,0 +1,82 @@
+// src/main/java/com/memoryspace/admin/AdminBlobGcServlet.java
+package com.memoryspace.admin;
+
+import com.memoryspace.media.BlobGarbageCollector;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * 관리자 - 업로드 파일 GC
+ * GET  /api/admin/blob-gc                                    누적 지표 / 마지막 실행 결과
+ * POST /api/admin/blob-gc?dryRun=true&limit=1000[&cursor=]   지금 한 번 실행 (기본은 dry-run 보고서)
+ *      dryRun=false는 GC 스레드에 넘기고 202를 돌려준다 (결과는 GET의 lastRun)
+ */
+@WebServlet(name = "AdminBlobGcServlet", urlPatterns = {"/api/admin/blob-gc"})
+public class AdminBlobGcServlet extends AbstractAdminServlet {
+
+    private static final int MAX_LIMIT = 100000;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+
+        if (!ensureAdmin(req, resp)) {
+            return;
+        }
+
+        resp.setContentType("application/json; charset=UTF-8");
+        resp.getWriter().write(BlobGarbageCollector.statsJson());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+
+        if (!ensureAdmin(req, resp)) {
+            return;
+        }
+
+        boolean dryRun = !"false".equalsIgnoreCase(req.getParameter("dryRun"));
+        int limit = 1000;
+        try {
+            if (req.getParameter("limit") != null) limit = Integer.parseInt(req.getParameter("limit"));
+        } catch (NumberFormatException ignored) {
+        }
+        limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String cursor = req.getParameter("cursor");
+        if (cursor != null && cursor.isEmpty()) cursor = null;
+
+        resp.setContentType("application/json; charset=UTF-8");
+
+        // 실제 삭제는 초당 한도로 limit에 비례해 오래 걸리므로 요청 스레드를 붙잡지 않는다
+        if (!dryRun) {
+            if (!BlobGarbageCollector.submit(cursor, limit, false)) {
+                resp.setStatus(HttpServletResponse.SC_CONFLICT);
+                resp.getWriter().write("{\"error\":\"busy\",\"message\":\"GC is disabled, running or already queued\"}");
+                return;
+            }
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+            resp.getWriter().write("{\"queued\":true,\"limit\":" + limit + "}");
+            return;
+        }
+
+        try {
+            BlobGarbageCollector.Report r = BlobGarbageCollector.runOnce(cursor, limit, dryRun);
+            if (r == null) {
+                resp.setStatus(HttpServletResponse.SC_CONFLICT);
+                resp.getWriter().write("{\"error\":\"busy\",\"message\":\"GC is already running\"}");
+                return;
+            }
+            resp.getWriter().write(r.toJson());
+        } catch (Exception e) {
+            e.printStackTrace();
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.getWriter().write("{\"error\":\"server\",\"message\":\"" + escapeJson(e.getMessage()) + "\"}");
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package com.memoryspace.admin;
 
 import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.media.UploadConfig;
+import com.memoryspace.storage.BlobRefDao;
+import com.memoryspace.storage.StorageUsageDao;
 
 import java.sql.*;
 import java.util.*;
 
 public class AdminDAO {
 
+    private final StorageUsageDao storage = new StorageUsageDao();
+    private final BlobRefDao blobRefs = new BlobRefDao();
+
     // ---------- DTO 정의 ----------
 
     public static class AdminUserSummary {
@@ -86,7 +92,7 @@ public class AdminDAO {
 
         List<AdminUserSummary> result = new ArrayList<>();
 
-        try (Connection conn = DBConnectionUtil.getConnection();
+        try (Connection conn = DBConnectionUtil.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
@@ -197,7 +203,7 @@ public class AdminDAO {
 
         List<AdminReportSummary> result = new ArrayList<>();
 
-        try (Connection conn = DBConnectionUtil.getConnection();
+        try (Connection conn = DBConnectionUtil.getReadConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
@@ -251,17 +257,30 @@ public class AdminDAO {
 
     /**
      * 행성을 soft delete 하고, 해당 신고도 processed 로 변경.
+     * 살아있던 행성이면 소유자 저장 용량에서 행성의 미디어만큼 뺀다.
      */
     public boolean deletePlanetAndResolveReport(long planetId, long reportId) throws SQLException {
-        String updatePlanetSql = "UPDATE planets SET isDeleted = 1 WHERE id = ?";
+        String lockPlanetSql = "SELECT isDeleted FROM planets WHERE id = ? FOR UPDATE";
+        // deletedAt 은 처음 삭제 시각을 유지 (GC 유예 기간 기준)
+        String updatePlanetSql = "UPDATE planets SET isDeleted = 1, deletedAt = COALESCE(deletedAt, NOW()) WHERE id = ?";
         String updateReportSql = "UPDATE media_reports SET status = 'processed', processedAt = NOW() WHERE id = ?";
 
         try (Connection conn = DBConnectionUtil.getConnection()) {
             conn.setAutoCommit(false);
 
-            try (PreparedStatement ps1 = conn.prepareStatement(updatePlanetSql);
+            try (PreparedStatement ps0 = conn.prepareStatement(lockPlanetSql);
+                 PreparedStatement ps1 = conn.prepareStatement(updatePlanetSql);
                  PreparedStatement ps2 = conn.prepareStatement(updateReportSql)) {
 
+                boolean wasLive = false;
+                ps0.setLong(1, planetId);
+                try (ResultSet rs = ps0.executeQuery()) {
+                    if (rs.next()) wasLive = rs.getInt(1) == 0;
+                }
+                long[] live = wasLive ? storage.liveUsageOfPlanet(conn, planetId) : null;
+                Map<String, Integer> refs = wasLive
+                        ? blobRefs.liveRefsOfPlanet(conn, planetId, UploadConfig.PUBLIC_PREFIX) : null;
+
                 ps1.setLong(1, planetId);
                 int updatedPlanet = ps1.executeUpdate();
 
@@ -269,6 +288,10 @@ public class AdminDAO {
                 int updatedReport = ps2.executeUpdate();
 
                 if (updatedPlanet > 0 && updatedReport > 0) {
+                    if (live != null) {
+                        storage.add(conn, storage.ownerOfPlanet(conn, planetId), -live[0], (int) -live[1]);
+                        blobRefs.release(conn, refs);
+                    }
                     conn.commit();
                     return true;
                 } else {
@@ -291,19 +314,13 @@ public class AdminDAO {
 
         String userCountSql = "SELECT COUNT(*) AS cnt FROM users";
 
-        String mediaSizeSql =
-                "SELECT COALESCE(SUM(pm.sizeBytes), 0) AS totalSize " +
-                "FROM planet_media pm " +
-                "JOIN planets p ON pm.planetId = p.id " +
-                "WHERE p.isDeleted = 0";
-
         String liveInSql =
                 "SELECT liveIn, COUNT(*) AS cnt " +
                 "FROM users " +
                 "GROUP BY liveIn " +
                 "ORDER BY cnt DESC";
 
-        try (Connection conn = DBConnectionUtil.getConnection()) {
+        try (Connection conn = DBConnectionUtil.getReadConnection()) {
 
             try (PreparedStatement ps = conn.prepareStatement(userCountSql);
                  ResultSet rs = ps.executeQuery()) {
@@ -312,12 +329,8 @@ public class AdminDAO {
                 }
             }
 
-            try (PreparedStatement ps = conn.prepareStatement(mediaSizeSql);
-                 ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    stats.usedBytes = rs.getLong("totalSize");
-                }
-            }
+            // 업로드/삭제 트랜잭션이 유지하는 카운터 (storage_totals 고정 행 수 합계)
+            stats.usedBytes = storage.totals(conn)[0];
 
             try (PreparedStatement ps = conn.prepareStatement(liveInSql);
                  ResultSet rs = ps.executeQuery()) {
@@ -332,7 +345,7 @@ public class AdminDAO {
             }
         }
 
-        stats.totalBytes = 10L * 1024 * 1024 * 1024;
+        stats.totalBytes = StorageUsageDao.TOTAL_CAPACITY_BYTES;
 
         return stats;
     }
@@ -380,7 +393,7 @@ public class AdminDAO {
                 "WHERE pm.planetId = ? " +
                 "ORDER BY pm.createdAt DESC, pm.id DESC";
 
-        try (Connection conn = DBConnectionUtil.getConnection()) {
+        try (Connection conn = DBConnectionUtil.getReadConnection()) {
             // 1) 행성 기본 정보
             try (PreparedStatement ps = conn.prepareStatement(planetSql)) {
                 ps.setLong(1, planetId);
@@ -0,0 +1,49 @@
+// src/main/java/com/memoryspace/admin/AdminDbPoolServlet.java
+package com.memoryspace.admin;
+
+import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.db.PoolStats;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 관리자 - DB 커넥션 풀 / read-write 라우팅 상태 조회
+ * GET /api/admin/db-pool
+ */
+@WebServlet(name = "AdminDbPoolServlet", urlPatterns = {"/api/admin/db-pool"})
+public class AdminDbPoolServlet extends AbstractAdminServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+
+        if (!ensureAdmin(req, resp)) {
+            return;
+        }
+
+        resp.setContentType("application/json; charset=UTF-8");
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        sb.append("\"pool\":").append(DBConnectionUtil.getPoolStats().toJson()).append(",");
+
+        // primary + replica 풀 전체
+        sb.append("\"pools\":[");
+        List<PoolStats> all = DBConnectionUtil.getAllPoolStats();
+        for (int i = 0; i < all.size(); i++) {
+            if (i > 0) sb.append(",");
+            sb.append(all.get(i).toJson());
+        }
+        sb.append("],");
+
+        sb.append("\"routing\":").append(DBConnectionUtil.getRoutingStatsJson());
+        sb.append("}");
+
+        resp.getWriter().write(sb.toString());
+    }
+}
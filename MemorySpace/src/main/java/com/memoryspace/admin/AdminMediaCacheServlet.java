@@ -0,0 +1,31 @@
+// src/main/java/com/memoryspace/admin/AdminMediaCacheServlet.java
+package com.memoryspace.admin;
+
+import com.memoryspace.media.HotBlobCache;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * 관리자 - /uploads hot 캐시 상태 (적중률, 아낀 바이트, 사용량)
+ * GET /api/admin/media-cache
+ */
+@WebServlet(name = "AdminMediaCacheServlet", urlPatterns = {"/api/admin/media-cache"})
+public class AdminMediaCacheServlet extends AbstractAdminServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+            throws ServletException, IOException {
+
+        if (!ensureAdmin(req, resp)) {
+            return;
+        }
+
+        resp.setContentType("application/json; charset=UTF-8");
+        resp.getWriter().write(HotBlobCache.statsJson());
+    }
+}
@@ -0,0 +1,393 @@
+package com.memoryspace.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * DriverManager 위에 얹은 단순한 고정 상한 커넥션 풀.
+ *
+ * - 전체 물리 커넥션 수(active + idle)는 maxSize를 넘지 않는다 (Semaphore).
+ * - 대여 시 일정 시간 이상 놀던 커넥션은 isValid()로 검증 후 내준다.
+ * - maxWaitMs 안에 커넥션을 얻지 못하면 SQLTransientConnectionException.
+ * - close()되지 않고 leakDetectionMs 이상 대여 중인 커넥션은 대여 위치 스택과 함께 로그로 남긴다.
+ * - 물리 커넥션마다 PreparedStatement LRU 캐시(StatementCache)를 둔다.
+ *
+ * DAO 쪽 코드는 그대로 con.close()를 호출하면 되고, 실제로는 풀로 반납된다.
+ */
+public class ConnectionPool {
+
+    /** 커넥션 획득 시간 히스토그램 구간 상한(ms). 마지막 버킷은 그 이상 전부. */
+    static final long[] ACQUIRE_BUCKETS_MS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500 };
+
+    private static final long VALIDATE_IF_IDLE_MS = 5000;
+    private static final int VALIDATION_TIMEOUT_SEC = 2;
+    private static final long HOUSEKEEPING_PERIOD_MS = 5000;
+
+    private final String name;
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final long maxWaitMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long leakDetectionMs;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledEntry> idle = new LinkedBlockingDeque<PooledEntry>();
+    private final Set<PooledEntry> borrowed = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLongArray acquireHistogram = new AtomicLongArray(ACQUIRE_BUCKETS_MS.length + 1);
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong acquireNanosTotal = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong statementCacheEvictions = new AtomicLong();
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    public ConnectionPool(String name, String url, String user, String password,
+                          int maxSize, int minIdle, long maxWaitMs,
+                          long idleTimeoutMs, long maxLifetimeMs, long leakDetectionMs,
+                          int statementCacheSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+
+        this.name = name;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.maxWaitMs = maxWaitMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.leakDetectionMs = leakDetectionMs;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "memoryspace-db-pool-" + ConnectionPool.this.name);
+            t.setDaemon(true);
+            return t;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep,
+                HOUSEKEEPING_PERIOD_MS, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (shutdown) throw new SQLException("Connection pool '" + name + "' is shut down");
+
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        if (!acquired) {
+            timeouts.incrementAndGet();
+            throw new SQLTransientConnectionException(
+                    "Connection pool '" + name + "' exhausted: timed out after " + maxWaitMs + "ms"
+                            + " (active=" + borrowed.size() + ", max=" + maxSize + ")");
+        }
+
+        try {
+            PooledEntry entry = takeIdleOrCreate();
+            entry.borrowedAt = System.currentTimeMillis();
+            entry.borrowSite = leakDetectionMs > 0 ? new Throwable("Connection borrowed here") : null;
+            entry.leakReported = false;
+            borrowed.add(entry);
+
+            recordAcquire(System.nanoTime() - start);
+            return entry.newHandle();
+
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledEntry takeIdleOrCreate() throws SQLException {
+        long now = System.currentTimeMillis();
+        PooledEntry entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (isExpired(entry, now)) {
+                destroy(entry);
+                continue;
+            }
+            if (now - entry.lastReturnedAt > VALIDATE_IF_IDLE_MS && !isAlive(entry)) {
+                destroy(entry);
+                continue;
+            }
+            return entry;
+        }
+        return createEntry();
+    }
+
+    private PooledEntry createEntry() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, user, password);
+        created.incrementAndGet();
+        return new PooledEntry(physical);
+    }
+
+    private boolean isAlive(PooledEntry entry) {
+        try {
+            return entry.physical.isValid(VALIDATION_TIMEOUT_SEC);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean isExpired(PooledEntry entry, long now) {
+        return maxLifetimeMs > 0 && now - entry.createdAt > maxLifetimeMs;
+    }
+
+    /** 논리 커넥션 close() 시 호출: 상태를 초기화하고 idle로 되돌린다. */
+    void release(PooledEntry entry) {
+        if (!borrowed.remove(entry)) return;
+
+        try {
+            boolean reusable = !shutdown && !entry.broken && resetState(entry);
+            if (reusable && !isExpired(entry, System.currentTimeMillis())) {
+                entry.lastReturnedAt = System.currentTimeMillis();
+                idle.offerFirst(entry); // LIFO: 최근 사용 커넥션을 우선 재사용
+            } else {
+                destroy(entry);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean resetState(PooledEntry entry) {
+        try {
+            Connection c = entry.physical;
+            if (c.isClosed()) return false;
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            if (c.isReadOnly()) c.setReadOnly(false);
+            c.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void destroy(PooledEntry entry) {
+        destroyed.incrementAndGet();
+        entry.statements.closeAll();
+        try { entry.physical.close(); } catch (Exception ignored) {}
+    }
+
+    private void recordAcquire(long nanos) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = ACQUIRE_BUCKETS_MS.length;
+        for (int i = 0; i < ACQUIRE_BUCKETS_MS.length; i++) {
+            if (ms <= ACQUIRE_BUCKETS_MS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        acquireHistogram.incrementAndGet(bucket);
+        acquireCount.incrementAndGet();
+        acquireNanosTotal.addAndGet(nanos);
+    }
+
+    // ---------- housekeeping ----------
+
+    private void housekeep() {
+        try {
+            evictIdle();
+            detectLeaks();
+        } catch (Throwable t) {
+            System.err.println("[db-pool:" + name + "] housekeeping failed: " + t);
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        int idleCount = idle.size();
+
+        Iterator<PooledEntry> it = idle.descendingIterator(); // 오래 쉰 것부터
+        while (it.hasNext()) {
+            PooledEntry e = it.next();
+            boolean idleTooLong = idleTimeoutMs > 0 && now - e.lastReturnedAt > idleTimeoutMs && idleCount > minIdle;
+            if ((idleTooLong || isExpired(e, now)) && idle.removeFirstOccurrence(e)) {
+                destroy(e);
+                idleCount--;
+            }
+        }
+    }
+
+    private void detectLeaks() {
+        if (leakDetectionMs <= 0) return;
+
+        long now = System.currentTimeMillis();
+        for (PooledEntry e : borrowed) {
+            if (e.leakReported || now - e.borrowedAt < leakDetectionMs) continue;
+
+            e.leakReported = true;
+            leaksDetected.incrementAndGet();
+            System.err.println("[db-pool:" + name + "] possible connection leak: borrowed "
+                    + (now - e.borrowedAt) + "ms ago and not closed yet");
+            if (e.borrowSite != null) e.borrowSite.printStackTrace();
+        }
+    }
+
+    // ---------- stats / lifecycle ----------
+
+    public PoolStats getStats() {
+        PoolStats s = new PoolStats();
+        s.name = name;
+        s.maxSize = maxSize;
+        s.active = borrowed.size();
+        s.idle = idle.size();
+        s.waiting = waiting.get();
+        s.created = created.get();
+        s.destroyed = destroyed.get();
+        s.timeouts = timeouts.get();
+        s.leaksDetected = leaksDetected.get();
+        s.acquireCount = acquireCount.get();
+        s.acquireMillisTotal = TimeUnit.NANOSECONDS.toMillis(acquireNanosTotal.get());
+        s.statementCacheHits = statementCacheHits.get();
+        s.statementCacheMisses = statementCacheMisses.get();
+        s.statementCacheEvictions = statementCacheEvictions.get();
+        s.acquireBucketsMs = ACQUIRE_BUCKETS_MS.clone();
+        s.acquireHistogram = new long[acquireHistogram.length()];
+        for (int i = 0; i < s.acquireHistogram.length; i++) {
+            s.acquireHistogram[i] = acquireHistogram.get(i);
+        }
+        return s;
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+
+        PooledEntry e;
+        while ((e = idle.pollFirst()) != null) destroy(e);
+        // 대여 중인 커넥션은 반납 시점에 닫힌다 (release -> destroy)
+    }
+
+    // ---------- pooled entry / logical handle ----------
+
+    final class PooledEntry {
+        final Connection physical;
+        final StatementCache statements;
+        final long createdAt = System.currentTimeMillis();
+        volatile long lastReturnedAt = createdAt;
+        volatile long borrowedAt;
+        volatile Throwable borrowSite;
+        volatile boolean leakReported;
+        volatile boolean broken;
+
+        PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.statements = new StatementCache(statementCacheSize,
+                    statementCacheHits, statementCacheMisses, statementCacheEvictions);
+        }
+
+        Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Handle(this));
+        }
+    }
+
+    /**
+     * DAO에 내주는 논리 커넥션. close()는 물리 커넥션을 닫지 않고 풀에 반납한다.
+     * 한 번 반납된 핸들은 더 이상 사용할 수 없다.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledEntry entry;
+        private volatile boolean closed;
+
+        Handle(PooledEntry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String m = method.getName();
+
+            if ("close".equals(m)) {
+                if (!closed) {
+                    closed = true;
+                    release(entry);
+                }
+                return null;
+            }
+            if ("isClosed".equals(m)) {
+                return closed || entry.physical.isClosed();
+            }
+            if ("equals".equals(m)) return proxy == args[0];
+            if ("hashCode".equals(m)) return System.identityHashCode(proxy);
+            if ("toString".equals(m)) return "PooledConnection[" + name + "]" + (closed ? " (closed)" : "");
+            if ("unwrap".equals(m) || "isWrapperFor".equals(m)) {
+                return method.invoke(entry.physical, args);
+            }
+
+            if (closed) throw new SQLException("Connection is closed");
+
+            try {
+                if ("prepareStatement".equals(m)) {
+                    PreparedStatement cached = entry.statements.prepare(
+                            entry.physical, (Connection) proxy, args, entry);
+                    if (cached != null) return cached;
+                }
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException ite) {
+                Throwable cause = ite.getCause();
+                if (cause instanceof SQLException && isFatal((SQLException) cause)) {
+                    entry.broken = true;
+                }
+                throw cause;
+            }
+        }
+    }
+
+    /** SQLState 08xxx(연결 오류)는 재사용하지 않고 폐기한다. */
+    private static boolean isFatal(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+}
@@ -1,15 +1,34 @@
 package com.memoryspace.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DBConnectionUtil {
 
-    private static final String URL =
-            "jdbc:mysql://localhost:3306/memoryspace?serverTimezone=Asia/Seoul&useSSL=false&allowPublicKeyRetrieval=true";
-    private static final String USER = "memory_user";
-    private static final String PASSWORD = "1234";
+    private static final String URL = System.getProperty("memoryspace.db.url",
+            "jdbc:mysql://localhost:3306/memoryspace?serverTimezone=Asia/Seoul&useSSL=false&allowPublicKeyRetrieval=true"
+            + "&useServerPrepStmts=true&rewriteBatchedStatements=true");
+    private static final String USER = System.getProperty("memoryspace.db.user", "memory_user");
+    private static final String PASSWORD = System.getProperty("memoryspace.db.password", "1234");
+
+    // 풀 설정 (-Dmemoryspace.db.pool.* 로 덮어쓰기 가능)
+    private static final int POOL_MAX_SIZE = intProp("memoryspace.db.pool.maxSize", 20);
+    private static final int POOL_MIN_IDLE = intProp("memoryspace.db.pool.minIdle", 2);
+    private static final long POOL_MAX_WAIT_MS = longProp("memoryspace.db.pool.maxWaitMs", 5000L);
+    private static final long POOL_IDLE_TIMEOUT_MS = longProp("memoryspace.db.pool.idleTimeoutMs", 10 * 60 * 1000L);
+    private static final long POOL_MAX_LIFETIME_MS = longProp("memoryspace.db.pool.maxLifetimeMs", 30 * 60 * 1000L);
+    private static final long POOL_LEAK_DETECTION_MS = longProp("memoryspace.db.pool.leakDetectionMs", 30 * 1000L);
+    // 커넥션당 캐시할 PreparedStatement 수 (0이면 캐시 끔)
+    private static final int STATEMENT_CACHE_SIZE = intProp("memoryspace.db.pool.statementCacheSize", 64);
+
+    // read/write 분리: 쉼표로 구분한 replica JDBC URL 목록 (없으면 모든 읽기가 primary)
+    private static final String REPLICA_URLS = System.getProperty("memoryspace.db.replicaUrls", "");
+    // 쓰기 직후 이 시간 동안은 해당 사용자의 읽기를 primary로 보낸다
+    private static final long READ_YOUR_WRITES_MS = longProp("memoryspace.db.readYourWritesMs", 5000L);
+
+    private static final RoutingDataSource ROUTER;
 
     static {
         try {
@@ -17,9 +36,88 @@ public class DBConnectionUtil {
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("Failed to load MySQL JDBC driver.", e);
         }
+
+        ConnectionPool primary = newPool("primary", URL);
+
+        List<ConnectionPool> replicas = new ArrayList<ConnectionPool>();
+        String[] urls = REPLICA_URLS.split(",");
+        for (int i = 0; i < urls.length; i++) {
+            String u = urls[i].trim();
+            if (!u.isEmpty()) replicas.add(newPool("replica-" + (replicas.size() + 1), u));
+        }
+
+        ROUTER = new RoutingDataSource(primary, replicas, READ_YOUR_WRITES_MS);
     }
 
+    private static ConnectionPool newPool(String name, String url) {
+        return new ConnectionPool(name, url, USER, PASSWORD,
+                POOL_MAX_SIZE, POOL_MIN_IDLE, POOL_MAX_WAIT_MS,
+                POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS, POOL_LEAK_DETECTION_MS,
+                STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * 풀에서 커넥션을 빌려온다. 사용 후 반드시 close() 해야 풀로 반납된다.
+     * 요청에 UnitOfWork가 바인딩되어 있으면 요청 공유 커넥션을 돌려준다 (close()는 무시됨).
+     */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) return uow.connection();
+        return ROUTER.getConnection();
+    }
+
+    /**
+     * 읽기 전용 조회용 커넥션. replica가 설정되어 있으면 replica에서 빌린다.
+     * 같은 요청에서 이미 쓰기를 했거나, 로그인 사용자가 방금 쓰기를 했으면 primary를 돌려준다.
+     * 이 커넥션으로는 절대 INSERT/UPDATE/DELETE를 하지 않는다.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        UnitOfWork uow = UnitOfWork.current();
+        if (uow != null) return uow.readConnection();
+        return ROUTER.getReadConnection(null);
+    }
+
+    /**
+     * 요청 UnitOfWork/트랜잭션과 무관한 primary 커넥션 (autoCommit, close()는 풀 반납).
+     * 요청 트랜잭션이 롤백되어도 남아야 하는 짧은 쓰기(예: 태그 사전 upsert)에 쓴다.
+     */
+    public static Connection getDirectConnection() throws SQLException {
+        return ROUTER.getConnection();
+    }
+
+    /**
+     * 현재 스레드에 요청 단위 UnitOfWork를 바인딩한다. 반드시 end()로 해제해야 한다.
+     * @param userKey 로그인 사용자 식별자(read-your-writes용), 비로그인이면 null
+     */
+    public static UnitOfWork beginUnitOfWork(String userKey) {
+        return UnitOfWork.bind(ROUTER, userKey);
+    }
+
+    public static PoolStats getPoolStats() {
+        return ROUTER.getAllStats().get(0);
+    }
+
+    public static List<PoolStats> getAllPoolStats() {
+        return ROUTER.getAllStats();
+    }
+
+    public static String getRoutingStatsJson() {
+        return ROUTER.routingStatsJson();
+    }
+
+    public static void shutdown() {
+        ROUTER.shutdown();
+    }
+
+    static int intProp(String key, int def) {
+        String v = System.getProperty(key);
+        if (v == null) return def;
+        try { return Integer.parseInt(v.trim()); } catch (Exception e) { return def; }
+    }
+
+    static long longProp(String key, long def) {
+        String v = System.getProperty(key);
+        if (v == null) return def;
+        try { return Long.parseLong(v.trim()); } catch (Exception e) { return def; }
     }
 }
@@ -0,0 +1,18 @@
+package com.memoryspace.db;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * 웹앱 종료(재배포 포함) 시 커넥션 풀을 정리한다.
+ * 정리하지 않으면 이전 클래스로더의 물리 커넥션/하우스키퍼 스레드가 남는다.
+ */
+@WebListener
+public class DBLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        DBConnectionUtil.shutdown();
+    }
+}
@@ -0,0 +1,64 @@
+package com.memoryspace.db;
+
+/**
+ * ConnectionPool 상태 스냅샷 (관리자 모니터링용).
+ */
+public class PoolStats {
+    public String name;
+    public int maxSize;
+
+    public int active;   // 대여 중
+    public int idle;     // 풀에서 대기 중
+    public int waiting;  // 커넥션을 기다리는 스레드 수
+
+    public long created;
+    public long destroyed;
+    public long timeouts;
+    public long leaksDetected;
+
+    public long acquireCount;
+    public long acquireMillisTotal;
+
+    public long statementCacheHits;
+    public long statementCacheMisses;
+    public long statementCacheEvictions;
+
+    // acquireHistogram[i] = acquireBucketsMs[i] ms 이하로 걸린 획득 횟수
+    // (마지막 칸은 마지막 구간 초과)
+    public long[] acquireBucketsMs;
+    public long[] acquireHistogram;
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{");
+        sb.append("\"name\":\"").append(name).append("\",");
+        sb.append("\"maxSize\":").append(maxSize).append(",");
+        sb.append("\"active\":").append(active).append(",");
+        sb.append("\"idle\":").append(idle).append(",");
+        sb.append("\"waiting\":").append(waiting).append(",");
+        sb.append("\"created\":").append(created).append(",");
+        sb.append("\"destroyed\":").append(destroyed).append(",");
+        sb.append("\"timeouts\":").append(timeouts).append(",");
+        sb.append("\"leaksDetected\":").append(leaksDetected).append(",");
+        sb.append("\"acquireCount\":").append(acquireCount).append(",");
+        sb.append("\"acquireMillisTotal\":").append(acquireMillisTotal).append(",");
+        sb.append("\"statementCache\":{");
+        sb.append("\"hits\":").append(statementCacheHits).append(",");
+        sb.append("\"misses\":").append(statementCacheMisses).append(",");
+        sb.append("\"evictions\":").append(statementCacheEvictions);
+        sb.append("},");
+
+        sb.append("\"acquireHistogram\":{");
+        for (int i = 0; i < acquireHistogram.length; i++) {
+            if (i > 0) sb.append(",");
+            String label = i < acquireBucketsMs.length
+                    ? "le" + acquireBucketsMs[i] + "ms"
+                    : "gt" + acquireBucketsMs[acquireBucketsMs.length - 1] + "ms";
+            sb.append("\"").append(label).append("\":").append(acquireHistogram[i]);
+        }
+        sb.append("}");
+
+        sb.append("}");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,174 @@
+package com.memoryspace.db;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 쓰기는 primary, 읽기 전용 DAO 메서드는 replica로 보내는 라우팅 DataSource.
+ *
+ * - getConnection(): 항상 primary 풀.
+ * - getReadConnection(userKey): replica들을 라운드로빈. replica가 없거나 실패하면 primary.
+ * - read-your-writes: 사용자가 쓰기를 한 뒤 readYourWritesMs 동안은 그 사용자의 읽기도 primary로 보낸다.
+ *   (복제 지연 때문에 방금 올린 미디어가 목록에 안 보이는 문제 방지)
+ *
+ * 끈적임(sticky) 정보는 이 프로세스 메모리에만 있으므로 서버가 여러 대면 세션 고정(sticky session)을 전제로 한다.
+ */
+public class RoutingDataSource implements DataSource {
+
+    private static final int STICKY_PURGE_THRESHOLD = 10000;
+
+    private final ConnectionPool primary;
+    private final List<ConnectionPool> replicas;
+    private final long readYourWritesMs;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<String, Long>();
+
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong replicaFailovers = new AtomicLong();
+
+    public RoutingDataSource(ConnectionPool primary, List<ConnectionPool> replicas, long readYourWritesMs) {
+        this.primary = primary;
+        this.replicas = replicas == null
+                ? Collections.<ConnectionPool>emptyList()
+                : Collections.unmodifiableList(new ArrayList<ConnectionPool>(replicas));
+        this.readYourWritesMs = readYourWritesMs;
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    /**
+     * 읽기용 커넥션. userKey가 최근 쓰기를 했으면 primary를 돌려준다.
+     */
+    public Connection getReadConnection(String userKey) throws SQLException {
+        ConnectionPool pool = readPool(userKey);
+        try {
+            return pool.getConnection();
+        } catch (SQLException e) {
+            if (pool == primary) throw e;
+            // replica 장애/포화 시 primary로 대체
+            replicaFailovers.incrementAndGet();
+            System.err.println("[db-routing] replica '" + pool.getName() + "' unavailable, reading from primary: " + e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    private ConnectionPool readPool(String userKey) {
+        if (replicas.isEmpty() || mustReadPrimary(userKey)) {
+            primaryReads.incrementAndGet();
+            return primary;
+        }
+        int i = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        replicaReads.incrementAndGet();
+        return replicas.get(i);
+    }
+
+    public boolean mustReadPrimary(String userKey) {
+        if (userKey == null || readYourWritesMs <= 0) return false;
+        Long until = stickyUntil.get(userKey);
+        if (until == null) return false;
+        if (until.longValue() > System.currentTimeMillis()) return true;
+        stickyUntil.remove(userKey, until);
+        return false;
+    }
+
+    /** userKey가 방금 쓰기를 했음을 기록한다. */
+    public void recordWrite(String userKey) {
+        if (userKey == null || readYourWritesMs <= 0 || replicas.isEmpty()) return;
+
+        stickyUntil.put(userKey, System.currentTimeMillis() + readYourWritesMs);
+        if (stickyUntil.size() > STICKY_PURGE_THRESHOLD) purgeExpired();
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> it = stickyUntil.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().longValue() <= now) it.remove();
+        }
+    }
+
+    public List<PoolStats> getAllStats() {
+        List<PoolStats> out = new ArrayList<PoolStats>();
+        out.add(primary.getStats());
+        for (ConnectionPool r : replicas) out.add(r.getStats());
+        return out;
+    }
+
+    public String routingStatsJson() {
+        return "{"
+                + "\"replicas\":" + replicas.size()
+                + ",\"readYourWritesMs\":" + readYourWritesMs
+                + ",\"replicaReads\":" + replicaReads.get()
+                + ",\"primaryReads\":" + primaryReads.get()
+                + ",\"replicaFailovers\":" + replicaFailovers.get()
+                + ",\"stickyUsers\":" + stickyUntil.size()
+                + "}";
+    }
+
+    public void shutdown() {
+        primary.shutdown();
+        for (ConnectionPool r : replicas) r.shutdown();
+    }
+
+    // ---------- DataSource boilerplate ----------
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled DataSource does not accept per-call credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) return iface.cast(this);
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,209 @@
+package com.memoryspace.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 물리 커넥션 하나에 붙는 PreparedStatement LRU 캐시.
+ *
+ * DAO가 같은 SQL로 prepareStatement()를 다시 호출하면 캐시에 보관된 문장을 꺼내 준다.
+ * DAO 쪽 ps.close()는 물리 문장을 닫지 않고 파라미터만 비운 뒤 캐시로 되돌린다.
+ * (서버 측 prepared statement를 쓰므로 parse/plan 비용이 커넥션당 한 번만 든다)
+ *
+ * 같은 SQL이 동시에 두 번 열려 있으면 두 번째는 캐시 없이 새로 준비하고,
+ * 먼저 반납된 쪽만 캐시에 남는다.
+ */
+final class StatementCache {
+
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    // accessOrder=true -> LRU
+    private final LinkedHashMap<String, PreparedStatement> cache;
+
+    StatementCache(int maxSize, AtomicLong hits, AtomicLong misses, AtomicLong evictions) {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.cache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+    }
+
+    /**
+     * 캐시 대상이면 캐시된(또는 새로 준비한) 문장을 프록시로 감싸서 돌려준다.
+     * 캐시 대상이 아닌 형태(prepareStatement(sql, int[]) 등)는 null을 돌려주고 호출부가 직접 처리한다.
+     */
+    PreparedStatement prepare(Connection physical, Connection logical, Object[] args,
+                              ConnectionPool.PooledEntry entry) throws SQLException {
+        String key = keyOf(args);
+        if (key == null || maxSize <= 0) return null;
+
+        PreparedStatement ps;
+        synchronized (this) {
+            ps = cache.remove(key); // 사용 중에는 캐시에서 빠져 있다
+        }
+
+        if (ps != null && !ps.isClosed()) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            ps = prepareNew(physical, args);
+        }
+
+        return (PreparedStatement) Proxy.newProxyInstance(
+                StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new CachedStatement(key, ps, logical, entry));
+    }
+
+    private static PreparedStatement prepareNew(Connection physical, Object[] args) throws SQLException {
+        String sql = (String) args[0];
+        if (args.length == 1) return physical.prepareStatement(sql);
+        if (args.length == 2) return physical.prepareStatement(sql, ((Integer) args[1]).intValue());
+        return physical.prepareStatement(sql, ((Integer) args[1]).intValue(), ((Integer) args[2]).intValue());
+    }
+
+    /**
+     * prepareStatement(sql), (sql, autoGeneratedKeys), (sql, rsType, rsConcurrency) 세 형태만 캐시한다.
+     */
+    private static String keyOf(Object[] args) {
+        if (args == null || args.length == 0 || !(args[0] instanceof String)) return null;
+
+        String sql = (String) args[0];
+        if (args.length == 1) return "0|" + sql;
+        if (args.length == 2 && args[1] instanceof Integer) return "K" + args[1] + "|" + sql;
+        if (args.length == 3 && args[1] instanceof Integer && args[2] instanceof Integer) {
+            return "R" + args[1] + "," + args[2] + "|" + sql;
+        }
+        return null;
+    }
+
+    private void giveBack(String key, PreparedStatement ps) {
+        PreparedStatement toClose = null;
+        List<PreparedStatement> evicted = null;
+
+        synchronized (this) {
+            if (cache.containsKey(key)) {
+                toClose = ps; // 같은 SQL이 이미 반납되어 있음
+            } else {
+                cache.put(key, ps);
+                if (cache.size() > maxSize) {
+                    evicted = new ArrayList<PreparedStatement>();
+                    Iterator<Map.Entry<String, PreparedStatement>> it = cache.entrySet().iterator();
+                    while (cache.size() > maxSize && it.hasNext()) {
+                        evicted.add(it.next().getValue());
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        closeQuietly(toClose);
+        if (evicted != null) {
+            for (PreparedStatement e : evicted) {
+                evictions.incrementAndGet();
+                closeQuietly(e);
+            }
+        }
+    }
+
+    synchronized int size() {
+        return cache.size();
+    }
+
+    /** 물리 커넥션 폐기 시 호출. */
+    void closeAll() {
+        List<PreparedStatement> all;
+        synchronized (this) {
+            all = new ArrayList<PreparedStatement>(cache.values());
+            cache.clear();
+        }
+        for (PreparedStatement ps : all) closeQuietly(ps);
+    }
+
+    private static void closeQuietly(Statement s) {
+        if (s == null) return;
+        try { s.close(); } catch (Exception ignored) {}
+    }
+
+    /**
+     * DAO에 내주는 문장 핸들. close()는 캐시 반납, getConnection()은 논리 커넥션을 돌려준다.
+     */
+    private final class CachedStatement implements InvocationHandler {
+        private final String key;
+        private final PreparedStatement target;
+        private final Connection logical;
+        private final ConnectionPool.PooledEntry entry;
+        private boolean closed;
+
+        CachedStatement(String key, PreparedStatement target, Connection logical, ConnectionPool.PooledEntry entry) {
+            this.key = key;
+            this.target = target;
+            this.logical = logical;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String m = method.getName();
+
+            if ("close".equals(m)) {
+                if (!closed) {
+                    closed = true;
+                    recycle();
+                }
+                return null;
+            }
+            if ("isClosed".equals(m)) return closed || target.isClosed();
+            if ("getConnection".equals(m)) return logical;
+            if ("equals".equals(m)) return proxy == args[0];
+            if ("hashCode".equals(m)) return System.identityHashCode(proxy);
+            if ("toString".equals(m)) return "CachedPreparedStatement[" + target + "]";
+
+            if (closed) throw new SQLException("Statement is closed");
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                Throwable cause = ite.getCause();
+                if (cause instanceof SQLException) {
+                    String state = ((SQLException) cause).getSQLState();
+                    if (state != null && state.startsWith("08")) entry.broken = true;
+                }
+                throw cause;
+            }
+        }
+
+        private void recycle() {
+            try {
+                if (target.isClosed() || entry.broken) {
+                    closeQuietly(target);
+                    return;
+                }
+                ResultSet rs = target.getResultSet();
+                if (rs != null) rs.close();
+                target.clearParameters();
+                target.clearBatch();
+                target.clearWarnings();
+                giveBack(key, target);
+            } catch (SQLException e) {
+                closeQuietly(target);
+            }
+        }
+    }
+}
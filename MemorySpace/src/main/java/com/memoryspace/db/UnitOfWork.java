@@ -0,0 +1,221 @@
+package com.memoryspace.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 요청 단위 커넥션 공유(Unit of Work).
+ *
+ * UnitOfWorkFilter가 요청 스레드에 바인딩하면, 그 요청 안에서 DBConnectionUtil.getConnection()은
+ * 매번 풀에서 새로 빌리지 않고 요청당 하나의 커넥션(첫 사용 시 획득)을 공유한다.
+ * DAO 쪽 close()는 아무 일도 하지 않고, 실제 반납은 요청 종료 시 end()에서 한 번만 일어난다.
+ *
+ * beginTransaction()을 호출하면 요청 전체가 하나의 트랜잭션이 된다.
+ * 이 경우 DAO/서비스의 setAutoCommit()/commit()은 무시되고, rollback()은 요청 전체를 rollback-only로 만든다.
+ * 커밋/롤백 여부는 end(success)에서 결정된다.
+ *
+ * 읽기 전용 경로(DBConnectionUtil.getReadConnection())는 별도 슬롯에서 replica 커넥션을 공유한다.
+ * 같은 요청에서 이미 primary를 쓰고 있으면 읽기도 primary를 그대로 쓴다.
+ * primary에서 SELECT 이외의 문장이 준비되면 로그인 사용자의 read-your-writes 창을 연다.
+ */
+public final class UnitOfWork {
+
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<UnitOfWork>();
+
+    private final RoutingDataSource router;
+    private final String userKey;
+
+    private final Slot primary = new Slot();
+    private final Slot read = new Slot();
+    private boolean transactional;
+    private boolean rollbackOnly;
+    private boolean wrote;
+
+    private UnitOfWork(RoutingDataSource router, String userKey) {
+        this.router = router;
+        this.userKey = userKey;
+    }
+
+    /** 현재 스레드에 새 UnitOfWork를 바인딩한다. userKey는 read-your-writes 판단용(로그인 사용자). */
+    public static UnitOfWork bind(RoutingDataSource router, String userKey) {
+        if (CURRENT.get() != null) {
+            throw new IllegalStateException("UnitOfWork already bound to this thread");
+        }
+        UnitOfWork uow = new UnitOfWork(router, userKey);
+        CURRENT.set(uow);
+        return uow;
+    }
+
+    /** 바인딩된 UnitOfWork (없으면 null). */
+    public static UnitOfWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 요청 전체를 하나의 트랜잭션으로 묶는다. UnitOfWork가 없으면 아무 일도 하지 않는다.
+     */
+    public static void requireTransaction() throws SQLException {
+        UnitOfWork uow = CURRENT.get();
+        if (uow != null) uow.beginTransaction();
+    }
+
+    /**
+     * 트랜잭션이 없으면 지금까지 쓰던 커넥션을 풀에 먼저 돌려준다.
+     * 외부 API 호출처럼 오래 걸리는 작업 전에 호출하면 그동안 커넥션을 붙잡고 있지 않는다.
+     * 이후 DB 접근이 있으면 다시 빌린다.
+     */
+    public static void releaseConnection() {
+        UnitOfWork uow = CURRENT.get();
+        if (uow == null) return;
+        uow.read.close();
+        if (!uow.transactional) uow.primary.close();
+    }
+
+    Connection connection() throws SQLException {
+        if (primary.pooled == null) {
+            primary.open(router.getConnection(), true);
+            if (transactional) primary.pooled.setAutoCommit(false);
+        }
+        return primary.shared;
+    }
+
+    Connection readConnection() throws SQLException {
+        if (primary.pooled != null || transactional) return connection();
+        if (read.pooled == null) {
+            read.open(router.getReadConnection(userKey), false);
+        }
+        return read.shared;
+    }
+
+    public void beginTransaction() throws SQLException {
+        if (transactional) return;
+        transactional = true;
+        if (primary.pooled != null) primary.pooled.setAutoCommit(false);
+    }
+
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    public void setRollbackOnly() {
+        rollbackOnly = true;
+    }
+
+    /**
+     * 요청 종료 처리. 트랜잭션이면 success && !rollbackOnly 일 때만 커밋하고,
+     * 어떤 경우든 커넥션을 풀로 반납하고 스레드 바인딩을 해제한다.
+     */
+    public void end(boolean success) {
+        if (CURRENT.get() == this) CURRENT.remove();
+
+        read.close();
+
+        Connection c = primary.pooled;
+        if (c == null) return;
+        try {
+            if (transactional) {
+                if (success && !rollbackOnly) c.commit();
+                else c.rollback();
+            }
+        } catch (SQLException e) {
+            System.err.println("[uow] " + (success ? "commit" : "rollback") + " failed: " + e.getMessage());
+            try { c.rollback(); } catch (Exception ignored) {}
+        } finally {
+            primary.close();
+            // 커밋 시점 기준으로 read-your-writes 창을 한 번 더 연장
+            if (wrote) router.recordWrite(userKey);
+        }
+    }
+
+    /**
+     * SELECT가 아닌 문장을 준비하면 쓰기로 본다.
+     * 실행 전에 바로 기록해서, 응답을 받은 클라이언트의 다음 읽기가 primary로 가도록 한다.
+     */
+    private void noteStatement(String m, Object[] args) {
+        if (wrote) return;
+        boolean write;
+        if (("prepareStatement".equals(m) || "prepareCall".equals(m)) && args != null && args[0] instanceof String) {
+            String sql = ((String) args[0]).trim();
+            write = !sql.regionMatches(true, 0, "SELECT", 0, 6);
+        } else {
+            write = "createStatement".equals(m); // SQL을 알 수 없으므로 보수적으로 쓰기 취급
+        }
+        if (write) {
+            wrote = true;
+            router.recordWrite(userKey);
+        }
+    }
+
+    /** 풀에서 빌린 커넥션 하나와 DAO에 내주는 close() 무시 래퍼. */
+    private final class Slot {
+        Connection pooled;
+        Connection shared;
+
+        void open(Connection c, boolean writable) {
+            pooled = c;
+            shared = (Connection) Proxy.newProxyInstance(
+                    UnitOfWork.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new SharedHandle(this, writable));
+        }
+
+        void close() {
+            Connection c = pooled;
+            pooled = null;
+            shared = null;
+            if (c != null) {
+                try { c.close(); } catch (Exception ignored) {}
+            }
+        }
+    }
+
+    /**
+     * DAO에 내주는 공유 커넥션. close()는 무시하고,
+     * 요청 트랜잭션 중에는 트랜잭션 제어 호출을 UnitOfWork가 가로챈다.
+     */
+    private final class SharedHandle implements InvocationHandler {
+        private final Slot slot;
+        private final boolean writable;
+
+        SharedHandle(Slot slot, boolean writable) {
+            this.slot = slot;
+            this.writable = writable;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String m = method.getName();
+
+            if ("close".equals(m)) return null;
+            if ("isClosed".equals(m)) return slot.pooled == null || slot.pooled.isClosed();
+            if ("equals".equals(m)) return proxy == args[0];
+            if ("hashCode".equals(m)) return System.identityHashCode(proxy);
+            if ("toString".equals(m)) return "UnitOfWorkConnection[" + slot.pooled + "]";
+
+            Connection target = slot.pooled;
+            if (target == null) throw new SQLException("Connection is closed");
+
+            if (writable) noteStatement(m, args);
+
+            if (writable && transactional) {
+                if ("setAutoCommit".equals(m) || "commit".equals(m)) return null;
+                if ("getAutoCommit".equals(m)) return Boolean.FALSE;
+                if ("rollback".equals(m) && (args == null || args.length == 0)) {
+                    rollbackOnly = true;
+                    target.rollback();
+                    return null;
+                }
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
@@ -6,7 +6,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
-@WebFilter("/*")  // MemorySpace 컨텍스트 안의 모든 요청을 한 번 거침
+@WebFilter(urlPatterns = "/*", asyncSupported = true)  // MemorySpace 컨텍스트 안의 모든 요청을 한 번 거침
 public class SpaRedirectFilter implements Filter {
 
     @Override
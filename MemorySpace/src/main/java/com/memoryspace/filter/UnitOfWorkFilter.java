@@ -0,0 +1,44 @@
+package com.memoryspace.filter;
+
+import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.db.UnitOfWork;
+
+import jakarta.servlet.*;
+import jakarta.servlet.annotation.WebFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+
+/**
+ * /api/* 요청마다 UnitOfWork를 바인딩한다.
+ * 요청 안의 모든 DAO 호출이 커넥션 하나를 공유하고(첫 사용 시 획득),
+ * 요청이 끝나면 성공 여부에 따라 커밋/롤백 후 반드시 풀로 반납된다.
+ * 비동기 요청은 doFilter가 돌아올 때 여기서 정리되고, 이후 콜백의 DB 접근은 풀에서 직접 빌린다.
+ */
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class UnitOfWorkFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+
+        UnitOfWork uow = DBConnectionUtil.beginUnitOfWork(userKeyOf((HttpServletRequest) request));
+        boolean success = false;
+        try {
+            chain.doFilter(request, response);
+            // 5xx 응답이면 요청 트랜잭션은 롤백
+            success = ((HttpServletResponse) response).getStatus() < 500;
+        } finally {
+            uow.end(success);
+        }
+    }
+
+    /** read-your-writes 판단용 사용자 키 (세션의 loginId). 세션을 새로 만들지 않는다. */
+    private static String userKeyOf(HttpServletRequest req) {
+        HttpSession session = req.getSession(false);
+        if (session == null) return null;
+        Object v = session.getAttribute("loginId");
+        return (v instanceof String) ? (String) v : null;
+    }
+}
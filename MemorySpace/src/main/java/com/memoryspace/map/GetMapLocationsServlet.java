@@ -1,6 +1,7 @@
 package com.memoryspace.map;
 
 import com.google.gson.Gson;
+import com.memoryspace.db.UnitOfWork;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -67,6 +68,9 @@ public class GetMapLocationsServlet extends HttpServlet {
         // 1) DB에서 locationName이 있는 planet_media 레코드 조회 (내 계정 기준)
         List<MapMediaDTO> locations = mapMediaDAO.getAllLocationsByUsername(loginId);
 
+        // Nominatim 호출 동안 요청 공유 커넥션을 붙잡고 있지 않도록 먼저 반납
+        UnitOfWork.releaseConnection();
+
         // 2) 위도/경도 비어 있으면 Nominatim으로 보완 후 DB에 캐싱
         for (MapMediaDTO location : locations) {
             if (location.getLatitude() == null || location.getLongitude() == null) {
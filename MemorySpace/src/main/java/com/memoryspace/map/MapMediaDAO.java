@@ -32,7 +32,7 @@ public class MapMediaDAO {
                 " WHERE pm.isDeleted = 0 " +
                 "   AND pm.locationName IS NOT NULL AND pm.locationName <> ''";
 
-        try (Connection conn = DBConnectionUtil.getConnection();
+        try (Connection conn = DBConnectionUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
 
@@ -70,7 +70,7 @@ public class MapMediaDAO {
                 "   AND pm.isDeleted = 0 " +
                 "   AND pm.locationName IS NOT NULL AND pm.locationName <> ''";
 
-        try (Connection conn = DBConnectionUtil.getConnection();
+        try (Connection conn = DBConnectionUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, username);
@@ -165,7 +165,7 @@ public class MapMediaDAO {
                 "  FROM planet_media pm " +
                 " WHERE pm.id = ?";
 
-        try (Connection conn = DBConnectionUtil.getConnection();
+        try (Connection conn = DBConnectionUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setLong(1, id);
@@ -192,7 +192,7 @@ public class MapMediaDAO {
                 " WHERE pm.planetId = ? " +
                 "   AND pm.isDeleted = 0";
 
-        try (Connection conn = DBConnectionUtil.getConnection();
+        try (Connection conn = DBConnectionUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setLong(1, planetId);
@@ -0,0 +1,262 @@
+package com.memoryspace.media;
+
+import com.memoryspace.storage.BlobInfo;
+import com.memoryspace.storage.BlobStore;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * /uploads 본문 비동기 전송 (AsyncContext + WriteListener).
+ *
+ * 소켓이 쓸 수 있을 때(isReady)만 파일에서 한 청크씩 읽어 쓰고, 막히면 곧바로 스레드를 돌려준다.
+ * 느린 모바일 클라이언트가 영상을 받는 동안 워커 스레드를 붙잡지 않으므로
+ * 동시에 받는 연결 수가 요청 스레드 풀 크기에 묶이지 않는다 (JSON API가 같이 멈추지 않는다).
+ * - 연결당 버퍼는 chunkBytes 하나. 동시 연결은 maxConnections까지, 넘으면 호출부가 기존 블로킹 전송을 쓴다
+ * - sendfile이 되는 응답은 여기로 오지 않는다 (커넥터가 이미 스레드 없이 보낸다)
+ * - 작은 응답(minBytes 미만)은 소켓 버퍼에 바로 들어가므로 블로킹 전송이 더 싸다
+ */
+final class AsyncBlobWriter implements WriteListener, AsyncListener {
+
+    static final boolean ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("memoryspace.uploads.async.enabled", "true"));
+
+    private static final long MIN_BYTES =
+            Long.getLong("memoryspace.uploads.async.minBytes", 256 * 1024L);
+    private static final int CHUNK_BYTES =
+            Integer.getInteger("memoryspace.uploads.async.chunkBytes", 64 * 1024);
+    private static final int MAX_CONNECTIONS =
+            Integer.getInteger("memoryspace.uploads.async.maxConnections", 2048);
+    // 전송 전체 시간 한도. 멈춘 클라이언트는 커넥터의 쓰기 타임아웃이 먼저 끊는다.
+    private static final long TIMEOUT_MS =
+            Long.getLong("memoryspace.uploads.async.timeoutMs", 30L * 60 * 1000);
+
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+
+    /** 응답 본문의 한 조각: 고정 바이트(multipart 구간 헤더 등) 또는 파일의 [start, start+length) */
+    static final class Segment {
+        final byte[] literal;
+        final long start;
+        final long length;
+
+        private Segment(byte[] literal, long start, long length) {
+            this.literal = literal;
+            this.start = start;
+            this.length = length;
+        }
+
+        static Segment bytes(byte[] b) {
+            return new Segment(b, 0, b.length);
+        }
+
+        static Segment range(long start, long length) {
+            return new Segment(null, start, length);
+        }
+    }
+
+    private final AsyncContext ctx;
+    private final ServletOutputStream out;
+    private final BlobStore store;
+    private final String name;
+    private final HotBlobCache.Entry hot;
+    private final FileChannel channel;
+    private final List<Segment> segments;
+    private final byte[] buf;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    // 아래는 onWritePossible 안에서만 바뀐다 (컨테이너가 직렬로 호출)
+    private int seg;
+    private long segPos;
+    private int bufLen;
+    private InputStream stream; // 로컬 파일이 아닌 저장소의 현재 구간
+    private long hotBytes;
+
+    private AsyncBlobWriter(AsyncContext ctx, ServletOutputStream out, BlobStore store, String name,
+                            HotBlobCache.Entry hot, FileChannel channel, List<Segment> segments) {
+        this.ctx = ctx;
+        this.out = out;
+        this.store = store;
+        this.name = name;
+        this.hot = hot;
+        this.channel = channel;
+        this.segments = segments;
+        this.buf = new byte[CHUNK_BYTES];
+    }
+
+    static List<Segment> single(long start, long length) {
+        return Collections.singletonList(Segment.range(start, length));
+    }
+
+    /**
+     * 비동기 전송을 시작했으면 true (호출부는 헤더만 설정하고 바로 돌아간다).
+     * false면 호출부가 직접 쓴다. 파일이 사라졌으면 NoSuchFileException (아직 아무것도 보내지 않은 상태).
+     */
+    static boolean start(HttpServletRequest req, HttpServletResponse resp, BlobStore store, String name,
+                         BlobInfo info, HotBlobCache.Entry hot, List<Segment> segments, long total)
+            throws IOException {
+        if (!ENABLED || total < MIN_BYTES || !req.isAsyncSupported()) return false;
+        if (ACTIVE.incrementAndGet() > MAX_CONNECTIONS) {
+            ACTIVE.decrementAndGet();
+            return false;
+        }
+
+        FileChannel ch = null;
+        try {
+            if (hot == null && info.path != null) ch = FileChannel.open(info.path, StandardOpenOption.READ);
+
+            AsyncContext ctx = req.startAsync();
+            ctx.setTimeout(TIMEOUT_MS);
+            AsyncBlobWriter w = new AsyncBlobWriter(ctx, resp.getOutputStream(), store, name, hot, ch, segments);
+            ctx.addListener(w);
+            w.out.setWriteListener(w); // 곧바로 onWritePossible이 불린다
+            return true;
+        } catch (IOException | RuntimeException e) {
+            if (ch != null) try { ch.close(); } catch (IOException ignored) {}
+            ACTIVE.decrementAndGet();
+            throw e;
+        }
+    }
+
+    // ---------- WriteListener ----------
+
+    @Override
+    public void onWritePossible() {
+        try {
+            while (!done.get() && out.isReady()) {
+                if (bufLen == 0 && !fill()) {
+                    finish();
+                    return;
+                }
+                out.write(buf, 0, bufLen); // 받아들인 바이트는 컨테이너가 들고 있으므로 버퍼를 다시 써도 된다
+                bufLen = 0;
+            }
+        } catch (IOException e) {
+            abort();
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        abort(); // 클라이언트가 끊음 (탐색, 앱 전환 등)
+    }
+
+    // ---------- AsyncListener ----------
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        System.err.println("[uploads] async send timed out: " + name);
+        abort();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        abort();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+        release();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+
+    // ---------- helpers ----------
+
+    /** 다음 청크를 buf에 채운다. 보낼 것이 없으면 false */
+    private boolean fill() throws IOException {
+        while (seg < segments.size()) {
+            Segment s = segments.get(seg);
+            long left = s.length - segPos;
+            if (left == 0) {
+                closeStream();
+                seg++;
+                segPos = 0;
+                continue;
+            }
+
+            int n = (int) Math.min(buf.length, left);
+            if (s.literal != null) System.arraycopy(s.literal, (int) segPos, buf, 0, n);
+            else readBody(s, s.start + segPos, n);
+            segPos += n;
+            bufLen = n;
+            return true;
+        }
+        return false;
+    }
+
+    private void readBody(Segment s, long pos, int n) throws IOException {
+        if (hot != null) {
+            hot.slice(pos, n).get(buf, 0, n);
+            hotBytes += n;
+            return;
+        }
+
+        if (channel != null) {
+            ByteBuffer bb = ByteBuffer.wrap(buf, 0, n);
+            while (bb.hasRemaining()) {
+                if (channel.read(bb, pos + bb.position()) < 0) throw new IOException("file truncated: " + name);
+            }
+            return;
+        }
+
+        if (stream == null) stream = store.openRange(name, s.start, s.length);
+        int off = 0;
+        while (off < n) {
+            int r = stream.read(buf, off, n - off);
+            if (r < 0) throw new IOException("file truncated: " + name);
+            off += r;
+        }
+    }
+
+    private void finish() {
+        if (!done.compareAndSet(false, true)) return;
+        if (hot != null) HotBlobCache.recordServed(hotBytes);
+        complete();
+    }
+
+    private void abort() {
+        if (!done.compareAndSet(false, true)) return;
+        complete();
+    }
+
+    private void complete() {
+        try {
+            ctx.complete();
+        } catch (IllegalStateException ignored) {
+            // 이미 끝난 요청
+        } finally {
+            release();
+        }
+    }
+
+    /** 파일 핸들과 동시 연결 자리를 돌려준다. complete()와 onComplete 양쪽에서 불려도 한 번만. */
+    private void release() {
+        if (!released.compareAndSet(false, true)) return;
+        ACTIVE.decrementAndGet();
+        closeStream();
+        if (channel != null) try { channel.close(); } catch (IOException ignored) {}
+    }
+
+    private void closeStream() {
+        if (stream == null) return;
+        try { stream.close(); } catch (IOException ignored) {}
+        stream = null;
+    }
+}
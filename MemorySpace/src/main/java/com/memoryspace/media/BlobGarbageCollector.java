@@ -0,0 +1,368 @@
+package com.memoryspace.media;
+
+import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.storage.BlobInfo;
+import com.memoryspace.storage.BlobStore;
+import com.memoryspace.storage.BlobStores;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 업로드 파일 GC. 디스크에 남은 파일 중 더 이상 쓰이지 않는 것을 조금씩 지운다.
+ *
+ * BlobStore를 cursor로 순회하면서 파일 이름 묶음마다 planet_media를 url로 한 번에 조회한다.
+ * - 가리키는 행이 없음 (썸네일 교체로 밀려난 파일, 회원 삭제로 행만 사라진 파일 등)
+ * - 가리키는 행이 모두 삭제(미디어 또는 행성 soft delete)된 지 유예 기간이 지남
+ * 둘 중 하나이고 파일 자체도 유예 기간보다 오래됐으면 지운다 (파생 이미지도 같이).
+ * refCount(살아있는 참조 수)는 UUID 파일과 업로드 전 예전 행을 모르므로 판단은 planet_media로 하고,
+ * 삭제 시 media_blobs 행 잠금에 쓴다.
+ *
+ * 한 번 실행에 filesPerRun개까지만 보고 다음 실행은 이어서 본다. 삭제는 초당 maxDeletesPerSecond로 제한한다.
+ */
+public final class BlobGarbageCollector {
+
+    private static final boolean ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("memoryspace.gc.enabled", "true"));
+    private static final boolean DRY_RUN =
+            "true".equalsIgnoreCase(System.getProperty("memoryspace.gc.dryRun", "false"));
+    private static final long GRACE_MS =
+            Long.getLong("memoryspace.gc.graceHours", 168L) * 3600_000L;
+    private static final long INTERVAL_MIN =
+            Long.getLong("memoryspace.gc.intervalMinutes", 15L);
+    private static final int FILES_PER_RUN =
+            Integer.getInteger("memoryspace.gc.filesPerRun", 5000);
+    private static final int BATCH_SIZE =
+            Integer.getInteger("memoryspace.gc.batchSize", 200);
+    private static final int MAX_DELETES_PER_SEC =
+            Integer.getInteger("memoryspace.gc.maxDeletesPerSecond", 20);
+
+    private static final int REPORT_SAMPLE = 100;
+
+    private static final AtomicBoolean RUNNING = new AtomicBoolean();
+    private static final AtomicBoolean QUEUED = new AtomicBoolean(); // 관리자 요청 실행이 GC 스레드에서 대기 중
+    private static volatile String cursor; // 정기 실행이 이어서 볼 위치
+    private static ScheduledExecutorService scheduler;
+
+    // 누적 지표 (프로세스 시작 이후)
+    private static final AtomicLong RUNS = new AtomicLong();
+    private static final AtomicLong PASSES = new AtomicLong();
+    private static final AtomicLong SCANNED = new AtomicLong();
+    private static final AtomicLong DELETED = new AtomicLong();
+    private static final AtomicLong BYTES_RECLAIMED = new AtomicLong();
+    private static final AtomicLong ERRORS = new AtomicLong();
+    private static volatile long lastRunAt;
+    private static volatile Report lastReport;
+
+    private BlobGarbageCollector() {}
+
+    public static synchronized void start() {
+        if (!ENABLED || scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "blob-gc");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                Report r = runOnce(cursor, FILES_PER_RUN, DRY_RUN);
+                if (r != null) {
+                    cursor = r.nextCursor;
+                    if (r.deleted > 0 || r.candidates > 0) {
+                        System.err.println("[blob-gc] " + r.toJson());
+                    }
+                }
+            } catch (Exception e) {
+                ERRORS.incrementAndGet();
+                System.err.println("[blob-gc] run failed: " + e.getMessage());
+            }
+        }, INTERVAL_MIN, INTERVAL_MIN, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 관리자 요청 실행을 GC 스레드에 넘긴다 (삭제는 초당 한도로 오래 걸리므로 요청 스레드에서 돌리지 않는다).
+     * GC가 꺼져 있거나 이미 실행/대기 중이면 false. 결과는 statsJson()의 lastRun으로 본다.
+     */
+    public static synchronized boolean submit(String from, int maxFiles, boolean dryRun) {
+        if (scheduler == null || RUNNING.get() || !QUEUED.compareAndSet(false, true)) return false;
+        scheduler.execute(() -> {
+            try {
+                Report r = runOnce(from, maxFiles, dryRun);
+                if (r != null) System.err.println("[blob-gc] manual " + r.toJson());
+            } catch (Exception e) {
+                ERRORS.incrementAndGet();
+                System.err.println("[blob-gc] manual run failed: " + e.getMessage());
+            } finally {
+                QUEUED.set(false);
+            }
+        });
+        return true;
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    /** 한 번 실행 결과. dryRun이면 candidates/candidateBytes만 채워진다. */
+    public static final class Report {
+        public boolean dryRun;
+        public long scanned;
+        public long candidates;
+        public long candidateBytes;
+        public long deleted;
+        public long bytesReclaimed;
+        public long errors;
+        public String nextCursor; // null이면 끝까지 봄
+        public final List<String> sample = new ArrayList<String>(); // "name (size, reason)"
+
+        public String toJson() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"dryRun\":").append(dryRun)
+              .append(",\"scanned\":").append(scanned)
+              .append(",\"candidates\":").append(candidates)
+              .append(",\"candidateBytes\":").append(candidateBytes)
+              .append(",\"deleted\":").append(deleted)
+              .append(",\"bytesReclaimed\":").append(bytesReclaimed)
+              .append(",\"errors\":").append(errors)
+              .append(",\"nextCursor\":").append(MediaJson.jstr(nextCursor))
+              .append(",\"sample\":").append(MediaJson.jsonArray(sample))
+              .append("}");
+            return sb.toString();
+        }
+    }
+
+    /**
+     * from부터 최대 maxFiles개를 본다. 다른 실행이 진행 중이면 null.
+     */
+    public static Report runOnce(String from, int maxFiles, boolean dryRun) throws IOException, SQLException {
+        if (!RUNNING.compareAndSet(false, true)) return null;
+        try {
+            Report r = new Report();
+            r.dryRun = dryRun;
+            collect(from, maxFiles, dryRun, r);
+
+            RUNS.incrementAndGet();
+            if (r.nextCursor == null) PASSES.incrementAndGet();
+            SCANNED.addAndGet(r.scanned);
+            DELETED.addAndGet(r.deleted);
+            BYTES_RECLAIMED.addAndGet(r.bytesReclaimed);
+            ERRORS.addAndGet(r.errors);
+            lastRunAt = System.currentTimeMillis();
+            lastReport = r;
+            return r;
+        } finally {
+            RUNNING.set(false);
+        }
+    }
+
+    private static void collect(String from, int maxFiles, boolean dryRun, Report r) throws IOException, SQLException {
+        BlobStore store = BlobStores.get();
+        long cutoff = System.currentTimeMillis() - GRACE_MS;
+        long delayMs = MAX_DELETES_PER_SEC > 0 ? 1000L / MAX_DELETES_PER_SEC : 0;
+
+        String cur = from;
+        while (r.scanned < maxFiles) {
+            List<BlobInfo> batch = new ArrayList<BlobInfo>();
+            cur = store.list(cur, (int) Math.min(BATCH_SIZE, maxFiles - r.scanned), batch);
+            r.scanned += batch.size();
+
+            // 파생 이미지는 원본과 같이 처리한다
+            List<BlobInfo> originals = new ArrayList<BlobInfo>();
+            for (BlobInfo b : batch) {
+                if (!isVariant(b.name)) originals.add(b);
+            }
+
+            Map<String, long[]> refs;
+            try (Connection con = DBConnectionUtil.getDirectConnection()) {
+                refs = references(con, urlsOf(originals));
+            }
+
+            for (BlobInfo b : originals) {
+                String reason = reason(b, refs.get(UploadConfig.PUBLIC_PREFIX + b.name), cutoff);
+                if (reason == null) continue;
+
+                r.candidates++;
+                r.candidateBytes += b.size;
+                if (r.sample.size() < REPORT_SAMPLE) r.sample.add(b.name + " (" + b.size + ", " + reason + ")");
+                if (dryRun) continue;
+
+                try {
+                    long freed = delete(store, b.name, cutoff);
+                    if (freed >= 0) {
+                        r.deleted++;
+                        r.bytesReclaimed += freed;
+                    }
+                } catch (Exception e) {
+                    r.errors++;
+                    System.err.println("[blob-gc] delete failed " + b.name + ": " + e.getMessage());
+                }
+                if (delayMs > 0) sleep(delayMs);
+            }
+
+            if (cur == null) break;
+        }
+        r.nextCursor = cur;
+    }
+
+    /** 지울 이유, 지우면 안 되면 null */
+    private static String reason(BlobInfo f, long[] ref, long cutoff) {
+        if (f.lastModified >= cutoff) return null;  // 최근 업로드/재사용된 파일
+        if (ref == null) return "orphan";
+        if (ref[0] != 0) return null;               // 살아있는 행이 있음
+        return ref[1] < cutoff ? "deleted" : null;  // 마지막 삭제가 유예 기간 전
+    }
+
+    /**
+     * url별 {살아있는 행 존재(1/0), 행들이 삭제된 가장 늦은 시각(ms)}. 가리키는 행이 없으면 map에 없다.
+     * 미디어 자체나 소속 행성이 soft delete 되면 그 행은 죽은 것으로 본다.
+     */
+    private static Map<String, long[]> references(Connection con, List<String> urls) throws SQLException {
+        Map<String, long[]> out = new HashMap<String, long[]>();
+        if (urls.isEmpty()) return out;
+
+        String sql =
+                "SELECT m.url, " +
+                "  MAX(CASE WHEN m.isDeleted=0 AND p.isDeleted=0 THEN 1 ELSE 0 END) AS live, " +
+                "  MAX(COALESCE(CASE WHEN m.isDeleted=1 THEN m.deletedAt ELSE p.deletedAt END, m.updatedAt)) AS deadSince " +
+                "FROM planet_media m " +
+                "JOIN planets p ON p.id = m.planetId " +
+                "WHERE m.url IN (" + MediaDao.placeholders(urls.size()) + ") " +
+                "GROUP BY m.url";
+
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (int i = 0; i < urls.size(); i++) ps.setString(i + 1, urls.get(i));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp dead = rs.getTimestamp(3);
+                    out.put(rs.getString(1), new long[] {
+                            rs.getInt(2),
+                            dead != null ? dead.getTime() : Long.MAX_VALUE
+                    });
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * media_blobs 행을 잠근 상태에서 다시 확인하고 지운다. 지운 바이트 수, 그 사이 다시 쓰이게 됐으면 -1.
+     * 같은 내용을 올리는 업로드는 blobRefs.increment에서 이 잠금을 기다리므로, 커밋된 새 참조를 놓치지 않는다.
+     */
+    private static long delete(BlobStore store, String name, long cutoff) throws IOException, SQLException {
+        Connection con = null;
+        try {
+            con = DBConnectionUtil.getDirectConnection();
+            con.setAutoCommit(false);
+
+            try (PreparedStatement lock = con.prepareStatement("SELECT refCount FROM media_blobs WHERE name=? FOR UPDATE")) {
+                lock.setString(1, name);
+                lock.executeQuery().close();
+            }
+
+            BlobInfo now = store.stat(name);
+            String url = UploadConfig.PUBLIC_PREFIX + name;
+            if (now == null || reason(now, references(con, Collections.singletonList(url)).get(url), cutoff) == null) {
+                con.rollback();
+                return -1;
+            }
+
+            long freed = now.size;
+            store.delete(name);
+            HotBlobCache.invalidate(name);
+            MediaMetaIndex.invalidate(name);
+            for (String variant : variantsOf(name)) {
+                BlobInfo v = store.stat(variant);
+                if (v != null && store.delete(variant)) freed += v.size;
+                HotBlobCache.invalidate(variant);
+                MediaMetaIndex.invalidate(variant);
+            }
+
+            try (PreparedStatement del = con.prepareStatement("DELETE FROM media_blobs WHERE name=?")) {
+                del.setString(1, name);
+                del.executeUpdate();
+            }
+            con.commit();
+            return freed;
+        } catch (IOException | SQLException e) {
+            if (con != null) {
+                try { con.rollback(); } catch (Exception ignored) {}
+            }
+            throw e;
+        } finally {
+            if (con != null) {
+                try { con.setAutoCommit(true); } catch (Exception ignored) {}
+            }
+            MediaJson.closeQuietly(con);
+        }
+    }
+
+    private static boolean isVariant(String name) {
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return base.endsWith(ImageDerivatives.THUMB_SUFFIX) || base.endsWith(ImageDerivatives.DISPLAY_SUFFIX)
+                || ImageResizer.isVariant(name);
+    }
+
+    private static List<String> variantsOf(String name) {
+        List<String> out = new ArrayList<String>();
+        for (String suffix : new String[] { ImageDerivatives.THUMB_SUFFIX, ImageDerivatives.DISPLAY_SUFFIX }) {
+            out.add(ImageDerivatives.variantName(name, suffix, "jpg"));
+            out.add(ImageDerivatives.variantName(name, suffix, "png"));
+        }
+        out.addAll(ImageResizer.variantNames(name));
+        return out;
+    }
+
+    private static List<String> urlsOf(List<BlobInfo> blobs) {
+        List<String> out = new ArrayList<String>(blobs.size());
+        for (BlobInfo b : blobs) out.add(UploadConfig.PUBLIC_PREFIX + b.name);
+        return out;
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static String statsJson() {
+        Report last = lastReport;
+        return "{"
+                + "\"enabled\":" + ENABLED
+                + ",\"dryRun\":" + DRY_RUN
+                + ",\"graceHours\":" + (GRACE_MS / 3600_000L)
+                + ",\"intervalMinutes\":" + INTERVAL_MIN
+                + ",\"filesPerRun\":" + FILES_PER_RUN
+                + ",\"maxDeletesPerSecond\":" + MAX_DELETES_PER_SEC
+                + ",\"running\":" + RUNNING.get()
+                + ",\"queued\":" + QUEUED.get()
+                + ",\"runs\":" + RUNS.get()
+                + ",\"passesCompleted\":" + PASSES.get()
+                + ",\"scanned\":" + SCANNED.get()
+                + ",\"deleted\":" + DELETED.get()
+                + ",\"bytesReclaimed\":" + BYTES_RECLAIMED.get()
+                + ",\"errors\":" + ERRORS.get()
+                + ",\"lastRunAt\":" + (lastRunAt == 0 ? "null" : String.valueOf(lastRunAt))
+                + ",\"cursor\":" + MediaJson.jstr(cursor)
+                + ",\"lastRun\":" + (last == null ? "null" : last.toJson())
+                + "}";
+    }
+}
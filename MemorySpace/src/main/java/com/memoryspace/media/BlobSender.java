@@ -0,0 +1,86 @@
+package com.memoryspace.media;
+
+import com.memoryspace.storage.BlobInfo;
+import com.memoryspace.storage.BlobStore;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * UploadsServlet 본문 전송 경로.
+ *
+ * 1) Tomcat sendfile: 응답 전체가 로컬 파일의 한 구간이면 요청 속성으로 파일/구간을 넘기고 본문은 쓰지 않는다.
+ *    커넥터가 sendfile(2)로 커널에서 바로 소켓으로 보내고, 워커 스레드는 곧바로 풀에 돌아간다.
+ * 2) FileChannel.transferTo: sendfile을 못 쓰면 (다른 컨테이너, multipart 응답의 각 구간 등)
+ *    파일 채널에서 응답 스트림 채널로 넘긴다. 요청마다 byte[]를 만들어 복사하지 않는다.
+ * 3) 복사 루프: 로컬 파일이 아닌 저장소(info.path == null)
+ */
+final class BlobSender {
+
+    // Tomcat(org.apache.coyote.Constants)이 읽는 요청 속성
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    // off로 두면 transferTo/복사 루프만 쓴다 (비교 측정, 문제 시 우회용)
+    static final boolean ZERO_COPY =
+            !"false".equalsIgnoreCase(System.getProperty("memoryspace.uploads.zeroCopy", "true"));
+
+    // 작은 파일은 sendfile 준비 비용이 더 크다 (Tomcat DefaultServlet 기본값과 같은 48KB)
+    private static final long SENDFILE_MIN_BYTES =
+            Long.getLong("memoryspace.uploads.sendfileMinBytes", 48 * 1024L);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private BlobSender() {}
+
+    /**
+     * 응답 전체를 sendfile로 넘길 수 있으면 요청 속성을 설정하고 true.
+     * true면 호출부는 Content-Length만 설정하고 출력 스트림을 건드리면 안 된다.
+     */
+    static boolean trySendfile(HttpServletRequest req, BlobInfo info, long start, long length) {
+        if (!ZERO_COPY || info.path == null || length < SENDFILE_MIN_BYTES) return false;
+        if (!Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORTED_ATTR))) return false;
+
+        req.setAttribute(SENDFILE_FILENAME_ATTR, info.path.toAbsolutePath().toString());
+        req.setAttribute(SENDFILE_START_ATTR, Long.valueOf(start));
+        req.setAttribute(SENDFILE_END_ATTR, Long.valueOf(start + length)); // end는 exclusive
+        return true;
+    }
+
+    /** name의 [start, start+length) 를 out에 쓴다. */
+    static void copy(BlobStore store, String name, BlobInfo info, long start, long length, OutputStream out)
+            throws IOException {
+        if (ZERO_COPY && info.path != null) {
+            try (FileChannel ch = FileChannel.open(info.path, StandardOpenOption.READ)) {
+                transfer(ch, start, length, Channels.newChannel(out));
+            }
+            return;
+        }
+
+        try (InputStream in = store.openRange(name, start, length)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                out.write(buf, 0, r);
+            }
+        }
+    }
+
+    static void transfer(FileChannel ch, long pos, long length, WritableByteChannel target) throws IOException {
+        long end = pos + length;
+        while (pos < end) {
+            long n = ch.transferTo(pos, end - pos, target);
+            if (n <= 0) throw new IOException("transferTo stalled (file truncated?)");
+            pos += n;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.memoryspace.media;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HTTP Range 헤더("bytes=0-99,200-,-500") 해석.
+ *
+ * - 형식이 틀렸거나 bytes 단위가 아니면 헤더를 무시한다 (전체 200 응답)
+ * - 만족하는 구간이 하나도 없으면 UNSATISFIABLE (416)
+ * - 겹치거나 붙어 있는 구간은 합친다. 구간이 너무 많으면 무시한다 (작은 조각 수천 개로 부풀리는 요청 방지)
+ */
+final class ByteRanges {
+
+    static final int MAX_RANGES = 16;
+
+    /** 만족하는 구간이 없음 (416) */
+    static final List<long[]> UNSATISFIABLE = Collections.emptyList();
+
+    private ByteRanges() {}
+
+    /**
+     * @return 정렬/병합된 {start, endInclusive} 목록, 무시해야 하면 null, 416이면 UNSATISFIABLE
+     */
+    static List<long[]> parse(String header, long size) {
+        if (header == null) return null;
+        String h = header.trim();
+        if (!h.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+
+        String[] specs = h.substring(6).split(",");
+        if (specs.length > MAX_RANGES) return null;
+
+        List<long[]> out = new ArrayList<long[]>();
+        for (String raw : specs) {
+            String spec = raw.trim();
+            if (spec.isEmpty()) continue;
+
+            int dash = spec.indexOf('-');
+            if (dash < 0) return null;
+            String a = spec.substring(0, dash).trim();
+            String b = spec.substring(dash + 1).trim();
+
+            long start, end;
+            try {
+                if (a.isEmpty()) {
+                    // 끝에서 n바이트
+                    long n = parseDigits(b);
+                    if (n == 0) continue;
+                    start = Math.max(0, size - n);
+                    end = size - 1;
+                } else {
+                    start = parseDigits(a);
+                    if (b.isEmpty()) {
+                        end = size - 1;
+                    } else {
+                        end = parseDigits(b);
+                        if (end < start) return null;
+                        if (end >= size) end = size - 1;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+
+            if (start >= size) continue; // 이 구간은 만족 불가, 다른 구간은 유효할 수 있음
+            out.add(new long[] { start, end });
+        }
+
+        if (out.isEmpty()) return UNSATISFIABLE;
+        return merge(out);
+    }
+
+    private static List<long[]> merge(List<long[]> ranges) {
+        if (ranges.size() == 1) return ranges;
+
+        Collections.sort(ranges, (x, y) -> Long.compare(x[0], y[0]));
+        List<long[]> out = new ArrayList<long[]>();
+        long[] cur = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            long[] r = ranges.get(i);
+            if (r[0] <= cur[1] + 1) {
+                cur[1] = Math.max(cur[1], r[1]);
+            } else {
+                out.add(cur);
+                cur = r;
+            }
+        }
+        out.add(cur);
+        return out;
+    }
+
+    /** 숫자만 허용 (부호, 공백 불가) */
+    private static long parseDigits(String s) {
+        if (s.isEmpty() || s.length() > 18) throw new NumberFormatException(s);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new NumberFormatException(s);
+        }
+        return Long.parseLong(s);
+    }
+}
@@ -0,0 +1,112 @@
+package com.memoryspace.media;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 파일 앞부분(매직 바이트)으로 이미지/영상 MIME 타입을 판별한다.
+ *
+ * 업로드의 Content-Type과 확장자는 클라이언트가 정하는 값이라 믿지 않는다.
+ * 받은 파일을 staging 한 뒤 여기서 판별한 값을 planet_media.mimeType/type으로 쓰고,
+ * 판별되지 않는 파일(문서, 스크립트, SVG 등)은 업로드를 거절한다.
+ */
+public final class ContentSniffer {
+
+    /** 판별에 필요한 앞부분 길이 */
+    public static final int HEAD_BYTES = 64;
+
+    private ContentSniffer() {}
+
+    public static String sniff(Path file) throws IOException {
+        byte[] head = new byte[HEAD_BYTES];
+        int n = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            while (n < head.length) {
+                int r = in.read(head, n, head.length - n);
+                if (r < 0) break;
+                n += r;
+            }
+        }
+        return sniff(head, n);
+    }
+
+    /** 알 수 있는 이미지/영상이면 MIME 타입, 아니면 null */
+    public static String sniff(byte[] b, int len) {
+        if (len < 4) return null;
+
+        // ----- 이미지 -----
+        if (u(b, 0) == 0xFF && u(b, 1) == 0xD8 && u(b, 2) == 0xFF) return "image/jpeg";
+        if (len >= 8 && u(b, 0) == 0x89 && ascii(b, 1, "PNG") && u(b, 4) == 0x0D && u(b, 5) == 0x0A
+                && u(b, 6) == 0x1A && u(b, 7) == 0x0A) return "image/png";
+        if (len >= 6 && (ascii(b, 0, "GIF87a") || ascii(b, 0, "GIF89a"))) return "image/gif";
+        if (len >= 12 && ascii(b, 0, "RIFF") && ascii(b, 8, "WEBP")) return "image/webp";
+        if (ascii(b, 0, "II") && u(b, 2) == 0x2A && u(b, 3) == 0x00) return "image/tiff";
+        if (ascii(b, 0, "MM") && u(b, 2) == 0x00 && u(b, 3) == 0x2A) return "image/tiff";
+        if (len >= 14 && ascii(b, 0, "BM")) return "image/bmp";
+
+        // ----- ISO BMFF (mp4/mov/3gp/heic/avif) -----
+        if (len >= 12 && ascii(b, 4, "ftyp")) return isoBrand(new String(b, 8, 4, StandardCharsets.ISO_8859_1));
+        // ftyp 없는 예전 QuickTime
+        if (len >= 8 && (ascii(b, 4, "moov") || ascii(b, 4, "mdat") || ascii(b, 4, "wide")
+                || ascii(b, 4, "free") || ascii(b, 4, "skip") || ascii(b, 4, "pnot"))) return "video/quicktime";
+
+        // ----- 그 밖의 영상 -----
+        if (u(b, 0) == 0x1A && u(b, 1) == 0x45 && u(b, 2) == 0xDF && u(b, 3) == 0xA3) {
+            return contains(b, len, "webm") ? "video/webm" : "video/x-matroska";
+        }
+        if (len >= 12 && ascii(b, 0, "RIFF") && ascii(b, 8, "AVI ")) return "video/x-msvideo";
+        if (len >= 8 && u(b, 0) == 0x30 && u(b, 1) == 0x26 && u(b, 2) == 0xB2 && u(b, 3) == 0x75
+                && u(b, 4) == 0x8E && u(b, 5) == 0x66 && u(b, 6) == 0xCF && u(b, 7) == 0x11) return "video/x-ms-wmv";
+        if (u(b, 0) == 0x00 && u(b, 1) == 0x00 && u(b, 2) == 0x01 && u(b, 3) == 0xBA) return "video/mpeg";
+        if (ascii(b, 0, "OggS")) return "video/ogg";
+
+        return null;
+    }
+
+    public static boolean isVideo(String mime) {
+        return mime != null && mime.startsWith("video/");
+    }
+
+    private static String isoBrand(String brand) {
+        switch (brand) {
+            case "qt  ":
+                return "video/quicktime";
+            case "heic": case "heix": case "hevc": case "hevx": case "heim": case "heis":
+                return "image/heic";
+            case "mif1": case "msf1":
+                return "image/heif";
+            case "avif": case "avis":
+                return "image/avif";
+            case "M4V ": case "M4VH": case "M4VP":
+                return "video/x-m4v";
+            case "M4A ": case "M4B ": case "M4P ":
+                return null; // 오디오
+            default:
+                if (brand.startsWith("3g2")) return "video/3gpp2";
+                if (brand.startsWith("3gp")) return "video/3gpp";
+                return "video/mp4"; // isom, iso2, mp41, mp42, avc1, dash ...
+        }
+    }
+
+    private static int u(byte[] b, int i) {
+        return b[i] & 0xFF;
+    }
+
+    private static boolean ascii(byte[] b, int off, String s) {
+        if (off + s.length() > b.length) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (b[off + i] != (byte) s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean contains(byte[] b, int len, String s) {
+        for (int i = 0; i + s.length() <= len; i++) {
+            if (ascii(b, i, s)) return true;
+        }
+        return false;
+    }
+}
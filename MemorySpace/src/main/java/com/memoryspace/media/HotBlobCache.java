@@ -0,0 +1,296 @@
+package com.memoryspace.media;
+
+import com.memoryspace.storage.BlobInfo;
+import com.memoryspace.storage.BlobStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * /uploads 자주 쓰는 작은 파일(행성 썸네일, 인기 이미지)을 direct(off-heap) 버퍼에 들고 있는 캐시.
+ *
+ * - 적중하면 stat/probeContentType/open 없이 메모리에서 바로 보낸다 (revalidateMs마다 한 번만 stat으로 확인)
+ * - 전체 크기(maxBytes)로 제한. 들어올 파일의 최근 요청 빈도(count-min sketch)가
+ *   LRU 끝쪽에서 밀려날 후보들보다 높을 때만 넣는다 (한 번 보고 마는 파일이 인기 파일을 밀어내지 않게)
+ * - 빈도는 주기적으로 절반으로 줄여서 예전 인기 파일이 계속 남지 않게 한다
+ * - GC가 파일을 지우면 invalidate()로 뺀다
+ */
+public final class HotBlobCache {
+
+    static final boolean ENABLED =
+            !"false".equalsIgnoreCase(System.getProperty("memoryspace.uploads.cache.enabled", "true"));
+
+    private static final long MAX_BYTES =
+            Long.getLong("memoryspace.uploads.cache.maxBytes", 64L * 1024 * 1024);
+    private static final long MAX_ENTRY_BYTES =
+            Long.getLong("memoryspace.uploads.cache.maxEntryBytes", 1024L * 1024);
+    private static final long REVALIDATE_MS =
+            Long.getLong("memoryspace.uploads.cache.revalidateMs", 60000L);
+    // 빈 공간이 있어도 이만큼 요청된 파일만 넣는다
+    private static final int MIN_HITS =
+            Integer.getInteger("memoryspace.uploads.cache.minHits", 2);
+
+    // 한 번 넣을 때 밀어낼 후보를 LRU 끝에서 최대 몇 개까지 볼지
+    private static final int EVICTION_SCAN = 32;
+
+    // accessOrder=true -> 오래 안 쓴 것이 앞. MAP 잠금으로 USED_BYTES, SKETCH도 같이 보호한다.
+    private static final LinkedHashMap<String, Entry> MAP = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+    private static final FrequencySketch SKETCH = new FrequencySketch(16);
+    private static long usedBytes;
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong BYTES_SERVED = new AtomicLong();
+    private static final AtomicLong ADMISSIONS = new AtomicLong();
+    private static final AtomicLong REJECTIONS = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+    private static final AtomicLong INVALIDATIONS = new AtomicLong();
+
+    private HotBlobCache() {}
+
+    /** 캐시된 파일 하나. data는 읽기 전용이고 slice()로 나눠 쓴다. */
+    static final class Entry {
+        final String name;
+        final long size;
+        final long lastModified;
+        final String mime;
+        final String etag;
+        private final ByteBuffer data;
+        volatile long checkedAt;
+
+        Entry(String name, BlobInfo info, String mime, String etag, ByteBuffer data) {
+            this.name = name;
+            this.size = info.size;
+            this.lastModified = info.lastModified;
+            this.mime = mime;
+            this.etag = etag;
+            this.data = data.asReadOnlyBuffer();
+            this.checkedAt = System.currentTimeMillis();
+        }
+
+        ByteBuffer slice(long start, long length) {
+            ByteBuffer b = data.duplicate();
+            b.position((int) start);
+            b.limit((int) (start + length));
+            return b;
+        }
+    }
+
+    /** 적중하면 Entry, 아니면 null. 요청 빈도도 여기서 센다. */
+    static Entry get(BlobStore store, String name) throws IOException {
+        if (!ENABLED) return null;
+
+        Entry e;
+        synchronized (MAP) {
+            SKETCH.increment(name);
+            e = MAP.get(name);
+        }
+        if (e == null) {
+            MISSES.incrementAndGet();
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - e.checkedAt > REVALIDATE_MS) {
+            BlobInfo cur = store.stat(name);
+            if (cur == null || cur.size != e.size || cur.lastModified != e.lastModified) {
+                remove(e);
+                MISSES.incrementAndGet();
+                return null;
+            }
+            e.checkedAt = now;
+        }
+
+        HITS.incrementAndGet();
+        return e;
+    }
+
+    /**
+     * 미스 후 호출. 넣을 가치가 있으면 파일을 읽어 넣고 Entry를 돌려준다 (호출부는 그것으로 응답한다).
+     * 넣지 않으면 null.
+     */
+    static Entry admit(String name, BlobInfo info, String mime, String etag) {
+        if (!ENABLED || info.path == null || info.size > MAX_ENTRY_BYTES || info.size > MAX_BYTES) return null;
+
+        synchronized (MAP) {
+            Entry cur = MAP.get(name);
+            if (cur != null) return cur;
+            if (victims(name, info.size) == null) {
+                REJECTIONS.incrementAndGet();
+                return null;
+            }
+        }
+
+        // 파일 읽기는 잠금 밖에서
+        ByteBuffer data;
+        try (FileChannel ch = FileChannel.open(info.path, StandardOpenOption.READ)) {
+            if (ch.size() != info.size) return null;
+            data = ByteBuffer.allocateDirect((int) info.size);
+            while (data.hasRemaining()) {
+                if (ch.read(data, data.position()) < 0) return null;
+            }
+            data.flip();
+        } catch (IOException | OutOfMemoryError e) {
+            // OutOfMemoryError: MaxDirectMemorySize 부족. 캐시 없이 계속 서비스한다.
+            System.err.println("[hot-cache] skip " + name + ": " + e);
+            return null;
+        }
+
+        Entry e = new Entry(name, info, mime, etag, data);
+        synchronized (MAP) {
+            Entry cur = MAP.get(name);
+            if (cur != null) return cur;
+
+            List<Entry> evict = victims(name, e.size);
+            if (evict == null) {
+                REJECTIONS.incrementAndGet();
+                return null;
+            }
+            for (Entry v : evict) {
+                MAP.remove(v.name);
+                usedBytes -= v.size;
+                EVICTIONS.incrementAndGet();
+            }
+            MAP.put(name, e);
+            usedBytes += e.size;
+        }
+        ADMISSIONS.incrementAndGet();
+        return e;
+    }
+
+    /**
+     * size를 넣으려면 밀어내야 하는 항목들 (공간이 있으면 빈 목록). 넣지 말아야 하면 null. MAP 잠금 안에서 호출.
+     */
+    private static List<Entry> victims(String name, long size) {
+        int freq = SKETCH.frequency(name);
+        if (freq < MIN_HITS) return null;
+
+        List<Entry> out = new ArrayList<Entry>();
+        long need = usedBytes + size - MAX_BYTES;
+        if (need <= 0) return out;
+
+        Iterator<Entry> it = MAP.values().iterator();
+        for (int scanned = 0; scanned < EVICTION_SCAN && it.hasNext(); scanned++) {
+            Entry v = it.next();
+            if (SKETCH.frequency(v.name) >= freq) continue; // 더 인기 있는 것은 남긴다
+            out.add(v);
+            need -= v.size;
+            if (need <= 0) return out;
+        }
+        return null;
+    }
+
+    /** 파일이 지워졌거나 바뀌었을 때. */
+    public static void invalidate(String name) {
+        synchronized (MAP) {
+            Entry e = MAP.remove(name);
+            if (e == null) return;
+            usedBytes -= e.size;
+        }
+        INVALIDATIONS.incrementAndGet();
+    }
+
+    private static void remove(Entry e) {
+        synchronized (MAP) {
+            if (MAP.get(e.name) != e) return;
+            MAP.remove(e.name);
+            usedBytes -= e.size;
+        }
+        INVALIDATIONS.incrementAndGet();
+    }
+
+    /** 캐시에서 보낸 본문 바이트 (디스크 읽기를 아낀 양) */
+    static void recordServed(long bytes) {
+        BYTES_SERVED.addAndGet(bytes);
+    }
+
+    static void clear() {
+        synchronized (MAP) {
+            MAP.clear();
+            usedBytes = 0;
+        }
+    }
+
+    public static String statsJson() {
+        long entries, used;
+        synchronized (MAP) {
+            entries = MAP.size();
+            used = usedBytes;
+        }
+        long hits = HITS.get();
+        long misses = MISSES.get();
+        long total = hits + misses;
+        return "{"
+                + "\"enabled\":" + ENABLED
+                + ",\"maxBytes\":" + MAX_BYTES
+                + ",\"maxEntryBytes\":" + MAX_ENTRY_BYTES
+                + ",\"usedBytes\":" + used
+                + ",\"entries\":" + entries
+                + ",\"hits\":" + hits
+                + ",\"misses\":" + misses
+                + ",\"hitRatio\":" + (total == 0 ? "0" : String.format(java.util.Locale.ROOT, "%.4f", (double) hits / total))
+                + ",\"bytesSaved\":" + BYTES_SERVED.get()
+                + ",\"admissions\":" + ADMISSIONS.get()
+                + ",\"rejections\":" + REJECTIONS.get()
+                + ",\"evictions\":" + EVICTIONS.get()
+                + ",\"invalidations\":" + INVALIDATIONS.get()
+                + "}";
+    }
+
+    /**
+     * 4행 count-min sketch. 칸마다 최대 15까지 세고, 증가 횟수가 칸 수의 10배가 되면 전부 절반으로 줄인다.
+     * 호출부(MAP 잠금)가 동기화한다.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] rows;
+        private final int shift;
+        private final int resetAt;
+        private int additions;
+
+        FrequencySketch(int log2Width) {
+            rows = new byte[SEEDS.length][1 << log2Width];
+            shift = 64 - log2Width;
+            resetAt = 10 * (1 << log2Width);
+        }
+
+        void increment(String key) {
+            int h = key.hashCode();
+            for (int i = 0; i < rows.length; i++) {
+                int idx = index(h, i);
+                if (rows[i][idx] < MAX_COUNT) rows[i][idx]++;
+            }
+            if (++additions >= resetAt) halve();
+        }
+
+        int frequency(String key) {
+            int h = key.hashCode();
+            int min = MAX_COUNT;
+            for (int i = 0; i < rows.length; i++) {
+                min = Math.min(min, rows[i][index(h, i)]);
+            }
+            return min;
+        }
+
+        private int index(int h, int row) {
+            return (int) (((h ^ SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length]) >>> shift);
+        }
+
+        private void halve() {
+            for (byte[] row : rows) {
+                for (int j = 0; j < row.length; j++) row[j] = (byte) (row[j] >> 1);
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.memoryspace.media;
+
+import com.memoryspace.db.DBConnectionUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 파생본이 없는 기존 이미지(variantStatus='pending')를 채우는 일회성/주기 실행 도구.
+ *
+ *   java -cp WEB-INF/classes:WEB-INF/lib/* com.memoryspace.media.ImageDerivativeBackfill [--dry-run] [--retry-failed] [--limit N]
+ *
+ * 서비스 중에 실행해도 된다. id 순서로 조금씩 읽고, 같은 원본 url은 한 번만 처리한다.
+ * (파생본 생성은 멱등이라 웹앱 워커와 같은 url을 동시에 처리해도 결과는 같다)
+ */
+public final class ImageDerivativeBackfill {
+
+    private static final int BATCH = 200;
+
+    private ImageDerivativeBackfill() {}
+
+    public static void main(String[] args) throws Exception {
+        boolean dryRun = false;
+        boolean retryFailed = false;
+        long limit = Long.MAX_VALUE;
+        for (int i = 0; i < args.length; i++) {
+            if ("--dry-run".equals(args[i])) dryRun = true;
+            else if ("--retry-failed".equals(args[i])) retryFailed = true;
+            else if ("--limit".equals(args[i]) && i + 1 < args.length) limit = Long.parseLong(args[++i]);
+        }
+
+        String statuses = retryFailed ? "'pending','failed'" : "'pending'";
+        String sql =
+                "SELECT id, url FROM planet_media " +
+                "WHERE variantStatus IN (" + statuses + ") AND type='image' AND isDeleted=0 AND id > ? " +
+                "ORDER BY id LIMIT " + BATCH;
+
+        Set<String> seen = new HashSet<String>();
+        long lastId = 0, done = 0, failed = 0, errors = 0;
+
+        while (seen.size() < limit) {
+            List<String> urls = new ArrayList<String>();
+            int rows = 0;
+            try (Connection con = DBConnectionUtil.getDirectConnection();
+                 PreparedStatement ps = con.prepareStatement(sql)) {
+                ps.setLong(1, lastId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        lastId = rs.getLong(1);
+                        String url = rs.getString(2);
+                        if (seen.size() < limit && seen.add(url)) urls.add(url);
+                    }
+                }
+            }
+            if (rows == 0) break;
+
+            for (String url : urls) {
+                if (dryRun) {
+                    System.out.println("would generate " + url);
+                    continue;
+                }
+                try {
+                    if (ImageDerivatives.generate(url)) done++;
+                    else failed++;
+                } catch (Exception e) {
+                    errors++;
+                    System.err.println("failed " + url + ": " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.println((dryRun ? "[dry-run] " : "") + "urls=" + seen.size() + " generated=" + done
+                + " undecodable=" + failed + " errors=" + errors);
+        DBConnectionUtil.shutdown();
+    }
+}
@@ -0,0 +1,185 @@
+package com.memoryspace.media;
+
+import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.storage.BlobRefDao;
+import com.memoryspace.storage.BlobStore;
+import com.memoryspace.storage.BlobStores;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 업로드 이미지의 파생본(썸네일/표시용) 생성.
+ *
+ * 업로드 커밋 후 submit()으로 원본 url을 넘기면 작은 백그라운드 풀에서 만든다.
+ * - 파생본 이름: <원본 이름에서 확장자 뺀 것>_thumb.jpg / _display.jpg (알파가 있으면 .png)
+ *   원본이 내용 주소 이름이면 파생본도 내용에 묶이므로, 같은 원본을 가리키는 행은 파생본을 공유한다.
+ * - 원본이 목표 크기보다 작으면 파일을 만들지 않고 원본 url을 그대로 쓴다.
+ * - 결과는 planet_media.thumbUrl/displayUrl/variantStatus에 같은 url의 행 전체로 기록한다.
+ * 큐가 가득 차서 버려진 작업은 variantStatus='pending'으로 남고 ImageDerivativeBackfill이 처리한다.
+ */
+public final class ImageDerivatives {
+
+    public static final String THUMB_SUFFIX = "_thumb";
+    public static final String DISPLAY_SUFFIX = "_display";
+
+    static final int THUMB_SIZE = Integer.getInteger("memoryspace.media.thumbSize", 320);
+    static final int DISPLAY_SIZE = Integer.getInteger("memoryspace.media.displaySize", 1280);
+
+    private static final float JPEG_QUALITY = 0.85f;
+    private static final long MAX_PIXELS =
+            Long.getLong("memoryspace.media.derivatives.maxPixels", 50_000_000L);
+    private static final int THREADS =
+            Integer.getInteger("memoryspace.media.derivatives.threads", 2);
+    private static final int QUEUE_SIZE =
+            Integer.getInteger("memoryspace.media.derivatives.queueSize", 1000);
+
+    // 요청 스레드와 CPU를 다투지 않도록 적은 수의 낮은 우선순위 데몬 스레드
+    private static final ThreadPoolExecutor POOL = newPool();
+
+    // 큐에 들어가 아직 시작 안 한 url (같은 원본 중복 제출 방지)
+    private static final Set<String> QUEUED = ConcurrentHashMap.newKeySet();
+
+    private ImageDerivatives() {}
+
+    private static ThreadPoolExecutor newPool() {
+        final AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+                r -> {
+                    Thread t = new Thread(r, "image-derivatives-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /** 커밋된 이미지 원본 url들의 파생본 생성을 예약한다. 실패해도 호출부에는 영향이 없다. */
+    public static void submit(Collection<String> urls) {
+        for (String url : urls) {
+            if (url == null || !QUEUED.add(url)) continue;
+            try {
+                POOL.execute(() -> {
+                    QUEUED.remove(url);
+                    try {
+                        generate(url);
+                    } catch (Exception e) {
+                        System.err.println("[derivatives] " + url + " failed: " + e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 큐가 가득 참 (또는 종료 중): pending으로 남기고 백필에 맡긴다
+                QUEUED.remove(url);
+                System.err.println("[derivatives] queue full, left for backfill: " + url);
+            }
+        }
+    }
+
+    /**
+     * url 하나의 파생본을 만들고(이미 있으면 재사용) DB에 기록한다. 백필 도구에서도 직접 호출한다.
+     * @return 성공하면 true, 디코딩할 수 없는 원본이면 false (variantStatus='failed')
+     */
+    public static boolean generate(String url) throws IOException, SQLException {
+        BlobStore store = BlobStores.get();
+        String name = BlobRefDao.nameFromUrl(url, UploadConfig.PUBLIC_PREFIX);
+        if (name == null || store.stat(name) == null) {
+            markFailed(url);
+            return false;
+        }
+
+        BufferedImage src;
+        try (InputStream in = store.open(name)) {
+            src = ImageScaler.read(in, MAX_PIXELS);
+        } catch (IOException e) {
+            src = null;
+        }
+        if (src == null) {
+            markFailed(url);
+            return false;
+        }
+
+        boolean alpha = ImageScaler.hasAlpha(src);
+        String format = alpha ? "png" : "jpg";
+
+        // 움직이는 GIF는 표시용을 원본으로 두고 썸네일만 첫 프레임으로 만든다
+        boolean gif = name.toLowerCase(Locale.ROOT).endsWith(".gif");
+
+        // 표시용을 먼저 만들고 썸네일은 그것에서 줄인다 (원본 전체를 두 번 줄이지 않도록)
+        BufferedImage display = gif ? src : ImageScaler.fit(src, DISPLAY_SIZE, DISPLAY_SIZE, alpha);
+        String displayUrl = (display == src)
+                ? url
+                : UploadConfig.PUBLIC_PREFIX + ensureVariant(store, variantName(name, DISPLAY_SUFFIX, format), display, format);
+
+        BufferedImage thumb = ImageScaler.fit(display, THUMB_SIZE, THUMB_SIZE, alpha);
+        String thumbUrl = (thumb == src)
+                ? url
+                : UploadConfig.PUBLIC_PREFIX + ensureVariant(store, variantName(name, THUMB_SUFFIX, format), thumb, format);
+
+        markReady(url, thumbUrl, displayUrl);
+        return true;
+    }
+
+    /** abc.jpeg + _thumb + jpg -> abc_thumb.jpg */
+    public static String variantName(String name, String suffix, String format) {
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return base + suffix + "." + format;
+    }
+
+    private static String ensureVariant(BlobStore store, String variant, BufferedImage img, String format) throws IOException {
+        if (store.stat(variant) != null) return variant; // 같은 원본을 공유하는 다른 행에서 이미 만든 것
+
+        Files.createDirectories(Paths.get(UploadConfig.STAGING_DIR));
+        Path tmp = Paths.get(UploadConfig.STAGING_DIR, UUID.randomUUID().toString().replace("-", "") + "." + format);
+        try {
+            ImageScaler.write(img, format, JPEG_QUALITY, tmp);
+            store.put(variant, tmp);
+            MediaMetaIndex.record(variant, store.stat(variant), "png".equals(format) ? "image/png" : "image/jpeg");
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return variant;
+    }
+
+    private static void markReady(String url, String thumbUrl, String displayUrl) throws SQLException {
+        try (Connection con = DBConnectionUtil.getDirectConnection();
+             PreparedStatement ps = con.prepareStatement(
+                     "UPDATE planet_media SET thumbUrl=?, displayUrl=?, variantStatus='ready' WHERE url=?")) {
+            ps.setString(1, thumbUrl);
+            ps.setString(2, displayUrl);
+            ps.setString(3, url);
+            ps.executeUpdate();
+        }
+    }
+
+    private static void markFailed(String url) throws SQLException {
+        try (Connection con = DBConnectionUtil.getDirectConnection();
+             PreparedStatement ps = con.prepareStatement(
+                     "UPDATE planet_media SET variantStatus='failed' WHERE url=? AND variantStatus='pending'")) {
+            ps.setString(1, url);
+            ps.executeUpdate();
+        }
+    }
+
+    static void shutdown() {
+        POOL.shutdownNow();
+    }
+}
@@ -0,0 +1,269 @@
+package com.memoryspace.media;
+
+import com.memoryspace.storage.BlobStore;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * /uploads/<name>?w=&h=&fit= 리사이즈 변형.
+ *
+ * - w, h는 허용 목록(memoryspace.media.resize.sizes)의 값만 받는다. 임의 크기로 캐시를 불리는 요청을 막는다
+ * - fit=contain(기본): w x h 안에 들어가게 (한쪽만 주면 그쪽만 제한), fit=cover: w x h를 채우고 가운데를 자른다 (둘 다 필요)
+ * - 변형 이름은 파라미터로 정해진다: <원본에서 확장자 뺀 것>_r<w>x<h>[c].jpg|png (c = cover, 알파가 있으면 png)
+ *   디스크에 있으면 그 이름으로 UploadsServlet 정적 경로(색인, hot 캐시, Range, 304, sendfile)를 그대로 탄다
+ * - 없으면 작은 CPU 풀에서 디코딩/축소/인코딩하고 요청은 waitMs까지 기다린다.
+ *   같은 변형을 동시에 요청하면 한 번만 만든다. 큐가 가득 차거나 오래 걸리면 503 + Retry-After
+ * - 원본이 GC로 지워질 때 변형도 같이 지운다 (variantNames)
+ */
+public final class ImageResizer {
+
+    static final String FIT_CONTAIN = "contain";
+    static final String FIT_COVER = "cover";
+
+    private static final int[] SIZES = parseSizes(
+            System.getProperty("memoryspace.media.resize.sizes", "160,320,640,1280,1920"));
+
+    private static final float JPEG_QUALITY = 0.85f;
+    private static final long MAX_PIXELS =
+            Long.getLong("memoryspace.media.resize.maxPixels", 50_000_000L);
+    private static final int THREADS =
+            Integer.getInteger("memoryspace.media.resize.threads",
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int QUEUE_SIZE =
+            Integer.getInteger("memoryspace.media.resize.queueSize", 32);
+    private static final long WAIT_MS =
+            Long.getLong("memoryspace.media.resize.waitMs", 15000L);
+
+    private static final String[] JPG_ONLY = { "jpg" };
+    private static final String[] PNG_OR_JPG = { "png", "jpg" };
+
+    private static final ThreadPoolExecutor POOL = newPool();
+
+    // 만드는 중인 변형 (확장자 뺀 이름 -> 결과 이름, 디코딩할 수 없으면 null)
+    private static final ConcurrentHashMap<String, Future<String>> IN_FLIGHT =
+            new ConcurrentHashMap<String, Future<String>>();
+
+    private ImageResizer() {}
+
+    private static ThreadPoolExecutor newPool() {
+        final AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+                r -> {
+                    Thread t = new Thread(r, "image-resize-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static int[] parseSizes(String csv) {
+        List<Integer> out = new ArrayList<Integer>();
+        for (String s : csv.split(",")) {
+            try {
+                int v = Integer.parseInt(s.trim());
+                if (v > 0) out.add(v);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        int[] sizes = new int[out.size()];
+        for (int i = 0; i < sizes.length; i++) sizes[i] = out.get(i);
+        Arrays.sort(sizes);
+        return sizes;
+    }
+
+    static boolean isResizeRequest(HttpServletRequest req) {
+        return req.getParameter("w") != null || req.getParameter("h") != null || req.getParameter("fit") != null;
+    }
+
+    /**
+     * 요청에 맞는 변형의 이름. 없으면 만들어서 돌려준다.
+     * 잘못된 파라미터/원본 없음/바쁨이면 에러 응답을 보내고 null.
+     */
+    static String variantFor(BlobStore store, String name, HttpServletRequest req, HttpServletResponse resp)
+            throws IOException {
+        int w = size(req.getParameter("w"));
+        int h = size(req.getParameter("h"));
+        String fit = req.getParameter("fit");
+        if (fit == null || fit.isEmpty()) fit = FIT_CONTAIN;
+        boolean cover = FIT_COVER.equals(fit);
+
+        if (w < 0 || h < 0 || (w == 0 && h == 0)
+                || (!cover && !FIT_CONTAIN.equals(fit)) || (cover && (w == 0 || h == 0))) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unsupported size");
+            return null;
+        }
+        String base = baseOf(name);
+        if (isVariant(name) || base.endsWith(ImageDerivatives.THUMB_SUFFIX) || base.endsWith(ImageDerivatives.DISPLAY_SUFFIX)) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST); // 변형의 변형은 만들지 않는다
+            return null;
+        }
+
+        MediaMetaIndex.Meta src = MediaMetaIndex.get(store, name);
+        if (src == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+        if (!src.mime.startsWith("image/")) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Not an image");
+            return null;
+        }
+
+        final String key = base + suffix(w, h, cover);
+        final boolean jpegSource = "image/jpeg".equals(src.mime);
+        for (String format : jpegSource ? JPG_ONLY : PNG_OR_JPG) {
+            String variant = key + "." + format;
+            if (MediaMetaIndex.get(store, variant) != null) return variant;
+        }
+
+        Future<String> f = IN_FLIGHT.get(key);
+        if (f == null) {
+            final int fw = w, fh = h;
+            final boolean fcover = cover;
+            FutureTask<String> task = new FutureTask<String>(() -> generate(store, name, key, fw, fh, fcover, jpegSource)) {
+                @Override
+                protected void done() {
+                    IN_FLIGHT.remove(key, this);
+                }
+            };
+            f = IN_FLIGHT.putIfAbsent(key, task);
+            if (f == null) {
+                f = task;
+                try {
+                    POOL.execute(task);
+                } catch (RejectedExecutionException e) {
+                    IN_FLIGHT.remove(key, task);
+                    sendBusy(resp);
+                    return null;
+                }
+            }
+        }
+
+        try {
+            String variant = f.get(WAIT_MS, TimeUnit.MILLISECONDS);
+            if (variant == null) resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE, "Unsupported image");
+            return variant;
+        } catch (TimeoutException e) {
+            // 만들기는 계속된다. 다음 요청은 디스크에서 바로 나간다
+            sendBusy(resp);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendBusy(resp);
+        } catch (ExecutionException e) {
+            System.err.println("[resize] " + key + " failed: " + e.getCause());
+            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        return null;
+    }
+
+    private static String generate(BlobStore store, String name, String key, int w, int h, boolean cover,
+                                   boolean jpegSource) throws IOException {
+        BufferedImage src;
+        try (InputStream in = store.open(name)) {
+            src = ImageScaler.read(in, MAX_PIXELS);
+        } catch (IOException e) {
+            // 깨진 파일, 너무 큰 이미지, ImageIO가 못 읽는 형식(heic/webp 등)
+            System.err.println("[resize] cannot decode " + name + ": " + e.getMessage());
+            src = null;
+        }
+        if (src == null) return null;
+
+        boolean alpha = !jpegSource && ImageScaler.hasAlpha(src);
+        String format = alpha ? "png" : "jpg";
+        BufferedImage out = cover
+                ? ImageScaler.cover(src, w, h, alpha)
+                : ImageScaler.fit(src, w == 0 ? Integer.MAX_VALUE : w, h == 0 ? Integer.MAX_VALUE : h, alpha);
+
+        String variant = key + "." + format;
+        Files.createDirectories(Paths.get(UploadConfig.STAGING_DIR));
+        Path tmp = Paths.get(UploadConfig.STAGING_DIR, UUID.randomUUID().toString().replace("-", "") + "." + format);
+        try {
+            ImageScaler.write(out, format, JPEG_QUALITY, tmp);
+            store.put(variant, tmp);
+            MediaMetaIndex.record(variant, store.stat(variant), alpha ? "image/png" : "image/jpeg");
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return variant;
+    }
+
+    private static void sendBusy(HttpServletResponse resp) throws IOException {
+        resp.setHeader("Retry-After", "1");
+        resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    /** 없으면 0, 허용 목록에 없으면 -1 */
+    private static int size(String v) {
+        if (v == null || v.isEmpty()) return 0;
+        try {
+            int n = Integer.parseInt(v);
+            return Arrays.binarySearch(SIZES, n) >= 0 ? n : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String suffix(int w, int h, boolean cover) {
+        return "_r" + w + "x" + h + (cover ? "c" : "");
+    }
+
+    private static String baseOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /** 리사이즈 변형 이름이면 true (원본 이름은 해시/UUID라 '_'가 없다) */
+    static boolean isVariant(String name) {
+        String base = baseOf(name);
+        int i = base.lastIndexOf("_r");
+        if (i < 0) return false;
+        String s = base.substring(i + 2);
+        if (s.endsWith("c")) s = s.substring(0, s.length() - 1);
+        return s.matches("\\d+x\\d+");
+    }
+
+    /** name에서 나올 수 있는 모든 리사이즈 변형 이름 (GC용). 허용 목록이 바뀌기 전에 만든 것은 빠진다. */
+    static List<String> variantNames(String name) {
+        String base = baseOf(name);
+        List<String> out = new ArrayList<String>();
+        for (int w = -1; w < SIZES.length; w++) {
+            for (int h = -1; h < SIZES.length; h++) {
+                int vw = w < 0 ? 0 : SIZES[w];
+                int vh = h < 0 ? 0 : SIZES[h];
+                if (vw == 0 && vh == 0) continue;
+                for (boolean cover : new boolean[] { false, true }) {
+                    if (cover && (vw == 0 || vh == 0)) continue;
+                    out.add(base + suffix(vw, vh, cover) + ".jpg");
+                    out.add(base + suffix(vw, vh, cover) + ".png");
+                }
+            }
+        }
+        return out;
+    }
+
+    static void shutdown() {
+        POOL.shutdownNow();
+    }
+}
@@ -0,0 +1,243 @@
+package com.memoryspace.media;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * 순수 Java(ImageIO/Java2D) 이미지 축소 도구. 썸네일/표시용 파생 이미지와 리사이즈 변형에서 같이 쓴다.
+ *
+ * - read(): 헤더로 크기를 먼저 보고 maxPixels를 넘으면 디코딩하지 않는다 (압축 폭탄 방지)
+ *   JPEG의 EXIF Orientation(APP1)을 적용해서 돌려준다 (휴대폰 세로 사진이 눕지 않게)
+ * - fit(): 절반씩 여러 번 줄인 뒤 마지막에 bilinear로 맞춘다 (한 번에 줄일 때 생기는 계단 현상 방지)
+ */
+public final class ImageScaler {
+
+    private ImageScaler() {}
+
+    /** 디코딩 가능한 이미지면 BufferedImage, 지원하지 않는 형식이면 null. 너무 크면 IOException. */
+    public static BufferedImage read(InputStream in, long maxPixels) throws IOException {
+        ImageInputStream iis = ImageIO.createImageInputStream(in);
+        if (iis == null) return null;
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                int orientation = "jpeg".equalsIgnoreCase(reader.getFormatName()) ? exifOrientation(iis) : 1;
+                reader.setInput(iis, true, true);
+                long w = reader.getWidth(0);
+                long h = reader.getHeight(0);
+                if (w <= 0 || h <= 0) return null;
+                if (w * h > maxPixels) throw new IOException("Image too large: " + w + "x" + h);
+                return orient(reader.read(0), orientation); // 애니메이션 GIF는 첫 프레임
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    /**
+     * JPEG APP1(Exif)의 Orientation 값 (1~8). 없거나 읽을 수 없으면 1.
+     * SOS 전까지 마커 세그먼트만 훑고 스트림 위치는 되돌린다 (ImageIO 메타데이터 파서는 마커 순서에 엄격해서 쓰지 않는다).
+     */
+    private static int exifOrientation(ImageInputStream iis) {
+        iis.mark();
+        try {
+            if (iis.read() != 0xFF || iis.read() != 0xD8) return 1;
+            for (int i = 0; i < 32; i++) {
+                int b = iis.read();
+                if (b != 0xFF) return 1;
+                int marker;
+                do {
+                    marker = iis.read(); // 채움 바이트(0xFF) 건너뛰기
+                } while (marker == 0xFF);
+                if (marker < 0 || marker == 0xDA || marker == 0xD9) return 1; // 이미지 데이터 시작 / 끝
+
+                int len = iis.readUnsignedShort() - 2;
+                if (len < 0) return 1;
+                if (marker == 0xE1 && len >= 14) {
+                    byte[] seg = new byte[len];
+                    iis.readFully(seg);
+                    if (seg[0] == 'E' && seg[1] == 'x' && seg[2] == 'i' && seg[3] == 'f' && seg[4] == 0 && seg[5] == 0) {
+                        return exifOrientation(seg);
+                    }
+                } else {
+                    iis.skipBytes(len);
+                }
+            }
+            return 1;
+        } catch (IOException e) {
+            return 1; // 메타데이터가 깨져도 이미지는 그대로 쓴다
+        } finally {
+            try { iis.reset(); } catch (IOException ignored) {}
+        }
+    }
+
+    /** "Exif\0\0" 뒤의 TIFF 헤더와 IFD0에서 0x0112(Orientation)를 찾는다 */
+    static int exifOrientation(byte[] app1) {
+        final int tiff = 6;
+        if (app1 == null || app1.length < tiff + 8) return 1;
+
+        boolean le;
+        if (app1[tiff] == 'I' && app1[tiff + 1] == 'I') le = true;
+        else if (app1[tiff] == 'M' && app1[tiff + 1] == 'M') le = false;
+        else return 1;
+
+        long ifd = tiff + u32(app1, tiff + 4, le);
+        if (ifd + 2 > app1.length) return 1;
+        int count = u16(app1, (int) ifd, le);
+        for (int i = 0; i < count; i++) {
+            int e = (int) ifd + 2 + i * 12;
+            if (e + 12 > app1.length) break;
+            if (u16(app1, e, le) == 0x0112) {
+                int v = u16(app1, e + 8, le); // SHORT 하나는 값 칸 앞 2바이트에 들어간다
+                return v >= 1 && v <= 8 ? v : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int u16(byte[] b, int off, boolean le) {
+        int a = b[off] & 0xff, c = b[off + 1] & 0xff;
+        return le ? (c << 8) | a : (a << 8) | c;
+    }
+
+    private static long u32(byte[] b, int off, boolean le) {
+        long hi = u16(b, le ? off + 2 : off, le);
+        long lo = u16(b, le ? off : off + 2, le);
+        return (hi << 16) | lo;
+    }
+
+    /** Orientation에 맞게 돌리거나 뒤집는다. 5~8은 가로/세로가 바뀐다. */
+    static BufferedImage orient(BufferedImage src, int orientation) {
+        if (orientation <= 1 || orientation > 8) return src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+
+        AffineTransform t;
+        switch (orientation) {
+            case 2: t = new AffineTransform(-1, 0, 0, 1, w, 0); break;   // 좌우 반전
+            case 3: t = new AffineTransform(-1, 0, 0, -1, w, h); break;  // 180도
+            case 4: t = new AffineTransform(1, 0, 0, -1, 0, h); break;   // 상하 반전
+            case 5: t = new AffineTransform(0, 1, 1, 0, 0, 0); break;    // 대각선 반전
+            case 6: t = new AffineTransform(0, 1, -1, 0, h, 0); break;   // 시계 방향 90도
+            case 7: t = new AffineTransform(0, -1, -1, 0, h, w); break;  // 반대 대각선 반전
+            default: t = new AffineTransform(0, -1, 1, 0, 0, w); break;  // 반시계 방향 90도
+        }
+
+        boolean swap = orientation >= 5;
+        int type = src.getType() != BufferedImage.TYPE_CUSTOM ? src.getType()
+                : (hasAlpha(src) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        BufferedImage out = new BufferedImage(swap ? h : w, swap ? w : h, type);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.drawImage(src, t, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    /** 비율을 유지하며 maxW x maxH 안에 들어가게 줄인다. 이미 작으면 src 그대로. */
+    public static BufferedImage fit(BufferedImage src, int maxW, int maxH, boolean keepAlpha) {
+        int w = src.getWidth();
+        int h = src.getHeight();
+        double scale = Math.min((double) maxW / w, (double) maxH / h);
+        if (scale >= 1.0) return src;
+
+        int targetW = Math.max(1, (int) Math.round(w * scale));
+        int targetH = Math.max(1, (int) Math.round(h * scale));
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage cur = src;
+        while (w / 2 >= targetW && h / 2 >= targetH) {
+            w /= 2;
+            h /= 2;
+            cur = draw(cur, w, h, type);
+        }
+        return draw(cur, targetW, targetH, type);
+    }
+
+    /**
+     * 비율을 유지하며 w x h를 덮도록 줄인 뒤 가운데를 잘라낸다.
+     * 원본이 더 작으면 확대하지 않고 원본 안에서 잘라낼 수 있는 만큼만 자른다.
+     */
+    public static BufferedImage cover(BufferedImage src, int w, int h, boolean keepAlpha) {
+        int sw = src.getWidth();
+        int sh = src.getHeight();
+        double scale = Math.max((double) w / sw, (double) h / sh);
+
+        BufferedImage scaled = src;
+        if (scale < 1.0) {
+            scaled = fit(src, Math.max(w, (int) Math.round(sw * scale)), Math.max(h, (int) Math.round(sh * scale)), keepAlpha);
+        }
+
+        int cw = Math.min(w, scaled.getWidth());
+        int ch = Math.min(h, scaled.getHeight());
+        int x = (scaled.getWidth() - cw) / 2;
+        int y = (scaled.getHeight() - ch) / 2;
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        return draw(scaled.getSubimage(x, y, cw, ch), cw, ch, type);
+    }
+
+    private static BufferedImage draw(BufferedImage src, int w, int h, int type) {
+        BufferedImage out = new BufferedImage(w, h, type);
+        Graphics2D g = out.createGraphics();
+        try {
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                // JPEG는 알파가 없으므로 투명 영역을 흰색으로
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(src, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    public static boolean hasAlpha(BufferedImage img) {
+        return img.getColorModel().hasAlpha();
+    }
+
+    /** format은 "jpg" 또는 "png". jpg는 quality(0~1)를 적용한다. */
+    public static void write(BufferedImage img, String format, float quality, Path dest) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) throw new IOException("No ImageIO writer for " + format);
+
+        ImageWriter writer = writers.next();
+        try (OutputStream os = Files.newOutputStream(dest);
+             ImageOutputStream out = ImageIO.createImageOutputStream(os)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpg".equals(format) && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.memoryspace.media;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * 미디어 목록 keyset 커서. (createdAt, id) 위치를 불투명한 문자열로 주고받는다.
+ * 형식: base64url("createdAtMillis:id") - 클라이언트는 내용을 해석하지 않는다.
+ */
+public class MediaCursor {
+    public Timestamp createdAt;
+    public long id;
+
+    public MediaCursor(Timestamp createdAt, long id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = createdAt.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** 형식이 잘못되었으면 null */
+    public static MediaCursor decode(String s) {
+        if (s == null || s.trim().isEmpty()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(s.trim()), StandardCharsets.US_ASCII);
+            int sep = raw.indexOf(':');
+            if (sep <= 0) return null;
+            long millis = Long.parseLong(raw.substring(0, sep));
+            long id = Long.parseLong(raw.substring(sep + 1));
+            if (id <= 0) return null;
+            return new MediaCursor(new Timestamp(millis), id);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -1,11 +1,30 @@
 package com.memoryspace.media;
 
+import com.memoryspace.storage.BlobRefDao;
+import com.memoryspace.storage.StorageUsageDao;
+
 import java.sql.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MediaDao {
 
+    // IN (...) 한 번에 넣는 최대 id 개수 (너무 긴 SQL/패킷 방지)
+    private static final int IN_CHUNK = 500;
+
+    private final StorageUsageDao storage = new StorageUsageDao();
+    private final BlobRefDao blobRefs = new BlobRefDao();
+
+    // liked/starred/reported는 행마다 계산하지 않고 ViewerInteractionCache가 채운다
+    private static final String MEDIA_COLUMNS =
+            "SELECT m.id, m.planetId, m.type, m.url, m.thumbUrl, m.displayUrl, m.description, m.locationName, " +
+            "m.durationMs, m.width, m.height, m.videoCodec, m.createdAt ";
+
     public boolean isPlanetOwner(Connection con, long planetId, long userId) throws SQLException {
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -80,6 +99,84 @@ public class MediaDao {
         }
     }
 
+    /**
+     * 한 요청의 업로드 파일들을 multi-row INSERT 한 번으로 넣고 각 NewMedia.id를 채운다.
+     * id는 generated key 연속성에 기대지 않고 이번 INSERT의 첫 id(LAST_INSERT_ID) 이후 행을 url로 다시 읽어 맞춘다.
+     * 내용 주소 저장에서는 같은 파일(url)이 여러 행일 수 있으므로 같은 url은 id 순서대로 나눠준다.
+     */
+    public void insertMediaRows(Connection con, long planetId, List<NewMedia> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+
+        for (int from = 0; from < rows.size(); from += IN_CHUNK) {
+            List<NewMedia> chunk = rows.subList(from, Math.min(from + IN_CHUNK, rows.size()));
+
+            StringBuilder sql = new StringBuilder(
+                    "INSERT INTO planet_media " +
+                    "(planetId, type, url, originalName, mimeType, sizeBytes, description, locationName, " +
+                    " durationMs, width, height, videoCodec, isDeleted) VALUES ");
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) sql.append(',');
+                sql.append("(?,?,?,?,?,?,?,?,?,?,?,?,0)");
+            }
+
+            PreparedStatement ps = null;
+            try {
+                ps = con.prepareStatement(sql.toString());
+                int idx = 1;
+                for (int i = 0; i < chunk.size(); i++) {
+                    NewMedia m = chunk.get(i);
+                    ps.setLong(idx++, planetId);
+                    ps.setString(idx++, m.stored.type);
+                    ps.setString(idx++, m.stored.publicUrl);
+                    ps.setString(idx++, m.stored.originalName);
+                    ps.setString(idx++, m.stored.mimeType);
+                    ps.setLong(idx++, m.stored.sizeBytes);
+                    ps.setString(idx++, m.description);
+                    ps.setString(idx++, m.locationName);
+                    ps.setObject(idx++, m.stored.durationMs, Types.BIGINT);
+                    ps.setObject(idx++, m.stored.width, Types.INTEGER);
+                    ps.setObject(idx++, m.stored.height, Types.INTEGER);
+                    ps.setString(idx++, m.stored.videoCodec);
+                }
+                ps.executeUpdate();
+            } finally {
+                MediaJson.closeQuietly(ps);
+            }
+
+            Map<String, ArrayDeque<NewMedia>> byUrl = new HashMap<String, ArrayDeque<NewMedia>>();
+            for (int i = 0; i < chunk.size(); i++) {
+                String url = chunk.get(i).stored.publicUrl;
+                if (!byUrl.containsKey(url)) byUrl.put(url, new ArrayDeque<NewMedia>());
+                byUrl.get(url).add(chunk.get(i));
+            }
+            int assigned = 0;
+
+            PreparedStatement sel = null;
+            ResultSet rs = null;
+            try {
+                sel = con.prepareStatement(
+                        "SELECT id, url FROM planet_media " +
+                        "WHERE planetId=? AND id >= LAST_INSERT_ID() AND url IN (" + placeholders(chunk.size()) + ") " +
+                        "ORDER BY id");
+                sel.setLong(1, planetId);
+                for (int i = 0; i < chunk.size(); i++) sel.setString(2 + i, chunk.get(i).stored.publicUrl);
+                rs = sel.executeQuery();
+                while (rs.next()) {
+                    ArrayDeque<NewMedia> q = byUrl.get(rs.getString(2));
+                    NewMedia m = (q != null) ? q.poll() : null;
+                    if (m != null) {
+                        m.id = rs.getLong(1);
+                        assigned++;
+                    }
+                }
+            } finally {
+                MediaJson.closeQuietly(rs);
+                MediaJson.closeQuietly(sel);
+            }
+            if (assigned != chunk.size()) throw new SQLException("Failed to get mediaId");
+        }
+    }
+
     public void updateMediaMeta(Connection con, long mediaId, long planetId, MediaMetaDto meta) throws SQLException {
         PreparedStatement ps = null;
         try {
@@ -97,8 +194,30 @@ public class MediaDao {
         }
     }
 
+    /** soft-delete 하고 살아있던 행이면 소유자 저장 용량에서 뺀다 (호출부 트랜잭션 안에서). */
     public int softDeleteMedia(Connection con, long mediaId, long planetId) throws SQLException {
+        long size = -1;
+        String url = null;
         PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = con.prepareStatement(
+                    "SELECT m.sizeBytes, m.url FROM planet_media m JOIN planets p ON p.id = m.planetId " +
+                    "WHERE m.id=? AND m.planetId=? AND m.isDeleted=0 AND p.isDeleted=0 FOR UPDATE"
+            );
+            ps.setLong(1, mediaId);
+            ps.setLong(2, planetId);
+            rs = ps.executeQuery();
+            if (rs.next()) {
+                size = rs.getLong(1);
+                url = rs.getString(2);
+            }
+        } finally {
+            MediaJson.closeQuietly(rs);
+            MediaJson.closeQuietly(ps);
+        }
+
+        int updated;
         try {
             ps = con.prepareStatement(
                     "UPDATE planet_media SET isDeleted=1, deletedAt=NOW() " +
@@ -106,10 +225,16 @@ public class MediaDao {
             );
             ps.setLong(1, mediaId);
             ps.setLong(2, planetId);
-            return ps.executeUpdate();
+            updated = ps.executeUpdate();
         } finally {
             MediaJson.closeQuietly(ps);
         }
+
+        if (updated == 1 && size >= 0) {
+            storage.add(con, storage.ownerOfPlanet(con, planetId), -size, -1);
+            blobRefs.decrement(con, BlobRefDao.nameFromUrl(url, UploadConfig.PUBLIC_PREFIX));
+        }
+        return updated;
     }
 
     public void clearThumbnailIfMatches(Connection con, long planetId, long mediaId) throws SQLException {
@@ -128,12 +253,8 @@ public class MediaDao {
     }
 
     public List<MediaDto> listMedia(Connection con, long planetId, long userId) throws SQLException {
-        // liked/starred/reported(본인) 상태를 EXISTS로 계산
     	String sql =
-    		    "SELECT m.id, m.planetId, m.type, m.url, m.description, m.locationName, m.createdAt, " +
-    		    "  EXISTS(SELECT 1 FROM media_likes ml WHERE ml.mediaId=m.id AND ml.userId=?) AS liked, " +
-    		    "  EXISTS(SELECT 1 FROM media_favorites mf WHERE mf.mediaId=m.id AND mf.userId=?) AS starred, " +
-    		    "  EXISTS(SELECT 1 FROM media_reports mr WHERE mr.mediaId=m.id AND mr.reporterUserId=?) AS reported " +
+    		    MEDIA_COLUMNS +
     		    "FROM planet_media m " +
     		    "JOIN planets p ON p.id = m.planetId " +
     		    "WHERE m.planetId=? AND m.isDeleted=0 " +
@@ -146,102 +267,211 @@ public class MediaDao {
         List<MediaDto> out = new ArrayList<MediaDto>();
         try {
             ps = con.prepareStatement(sql);
-            ps.setLong(1, userId);
-            ps.setLong(2, userId);
-            ps.setLong(3, userId);
-            ps.setLong(4, planetId);
+            ps.setLong(1, planetId);
 
             rs = ps.executeQuery();
             while (rs.next()) {
-                MediaDto d = new MediaDto();
-                d.id = rs.getLong("id");
-                d.planetId = rs.getLong("planetId");
-                d.mediaType = rs.getString("type"); // 프론트는 mediaType 사용
-                d.url = rs.getString("url");
-                d.description = rs.getString("description");
-                d.location = rs.getString("locationName");
-                d.createdAt = rs.getTimestamp("createdAt");
-                d.liked = rs.getInt("liked") == 1;
-                d.starred = rs.getInt("starred") == 1;
-                d.reported = rs.getInt("reported") == 1;
-
-                d.tags = listTagNamesForMedia(con, d.id);
-                out.add(d);
+                out.add(readMedia(rs));
             }
-
-            return out;
-
         } finally {
             MediaJson.closeQuietly(rs);
             MediaJson.closeQuietly(ps);
         }
+
+        // ✅ 태그/본인 상태는 행마다 조회하지 않고 목록 전체를 한 번에 (N+1 제거)
+        attachTags(con, out);
+        ViewerInteractionCache.apply(con, userId, out);
+        return out;
     }
 
-    public MediaDto getMediaOne(Connection con, long mediaId, long userId) throws SQLException {
+    /**
+     * keyset 페이지 조회. after가 null이면 첫 페이지.
+     * (createdAt, id) > after 조건이 idx_media_planet 범위 스캔으로 풀리므로 뒤쪽 페이지도 첫 페이지와 비용이 같다.
+     */
+    public MediaPage listMediaPage(Connection con, long planetId, long userId,
+                                   MediaCursor after, int limit) throws SQLException {
         String sql =
-                "SELECT m.id, m.planetId, m.type, m.url, m.description, m.locationName, m.createdAt, " +
-                "  EXISTS(SELECT 1 FROM media_likes ml WHERE ml.mediaId=m.id AND ml.userId=?) AS liked, " +
-                "  EXISTS(SELECT 1 FROM media_favorites mf WHERE mf.mediaId=m.id AND mf.userId=?) AS starred, " +
-                "  EXISTS(SELECT 1 FROM media_reports mr WHERE mr.mediaId=m.id AND mr.reporterUserId=?) AS reported " +
+                MEDIA_COLUMNS +
                 "FROM planet_media m " +
-                "WHERE m.id=? LIMIT 1";
+                "JOIN planets p ON p.id = m.planetId " +
+                "WHERE m.planetId=? AND m.isDeleted=0 " +
+                "  AND (p.thumbnailMediaId IS NULL OR m.id <> p.thumbnailMediaId) " +
+                (after != null
+                        ? "  AND m.createdAt >= ? AND (m.createdAt > ? OR m.id > ?) "
+                        : "") +
+                "ORDER BY m.createdAt ASC, m.id ASC " +
+                "LIMIT ?";
 
         PreparedStatement ps = null;
         ResultSet rs = null;
 
+        List<MediaDto> out = new ArrayList<MediaDto>();
+        boolean hasMore = false;
         try {
             ps = con.prepareStatement(sql);
-            ps.setLong(1, userId);
-            ps.setLong(2, userId);
-            ps.setLong(3, userId);
-            ps.setLong(4, mediaId);
+            int idx = 1;
+            ps.setLong(idx++, planetId);
+            if (after != null) {
+                ps.setTimestamp(idx++, after.createdAt);
+                ps.setTimestamp(idx++, after.createdAt);
+                ps.setLong(idx++, after.id);
+            }
+            ps.setInt(idx, limit + 1); // 한 건 더 읽어서 다음 페이지 유무 판단
 
             rs = ps.executeQuery();
-            if (!rs.next()) return null;
-
-            MediaDto d = new MediaDto();
-            d.id = rs.getLong("id");
-            d.planetId = rs.getLong("planetId");
-            d.mediaType = rs.getString("type");
-            d.url = rs.getString("url");
-            d.description = rs.getString("description");
-            d.location = rs.getString("locationName");
-            d.createdAt = rs.getTimestamp("createdAt");
-            d.liked = rs.getInt("liked") == 1;
-            d.starred = rs.getInt("starred") == 1;
-            d.reported = rs.getInt("reported") == 1;
-
-            d.tags = listTagNamesForMedia(con, d.id);
-            return d;
-
+            while (rs.next()) {
+                if (out.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                out.add(readMedia(rs));
+            }
         } finally {
             MediaJson.closeQuietly(rs);
             MediaJson.closeQuietly(ps);
         }
+
+        attachTags(con, out);
+        ViewerInteractionCache.apply(con, userId, out);
+
+        MediaPage page = new MediaPage();
+        page.items = out;
+        if (hasMore && !out.isEmpty()) {
+            MediaDto last = out.get(out.size() - 1);
+            page.nextCursor = new MediaCursor(last.createdAt, last.id).encode();
+        }
+        return page;
     }
 
-    public List<String> listTagNamesForMedia(Connection con, long mediaId) throws SQLException {
-        String sql =
-                "SELECT t.name " +
-                "FROM media_tags mt " +
-                "JOIN tags t ON t.id = mt.tagId " +
-                "WHERE mt.mediaId=? " +
-                "ORDER BY t.name ASC";
+    public MediaDto getMediaOne(Connection con, long mediaId, long userId) throws SQLException {
+        List<MediaDto> list = getMediaMany(con, Collections.singletonList(Long.valueOf(mediaId)), userId);
+        return list.isEmpty() ? null : list.get(0);
+    }
 
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-        List<String> out = new ArrayList<String>();
+    /**
+     * 여러 미디어를 한 번에 조회 (업로드 직후 응답용).
+     * 결과는 mediaIds 순서를 따르고, 없는 id는 빠진다. 태그 포함 쿼리 수는 id 개수와 무관하게 일정하다.
+     */
+    public List<MediaDto> getMediaMany(Connection con, List<Long> mediaIds, long userId) throws SQLException {
+        Map<Long, MediaDto> byId = new HashMap<Long, MediaDto>();
+
+        for (int from = 0; from < mediaIds.size(); from += IN_CHUNK) {
+            List<Long> chunk = mediaIds.subList(from, Math.min(from + IN_CHUNK, mediaIds.size()));
+            String sql =
+                    MEDIA_COLUMNS +
+                    "FROM planet_media m " +
+                    "WHERE m.id IN (" + placeholders(chunk.size()) + ")";
+
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            try {
+                ps = con.prepareStatement(sql);
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setLong(1 + i, chunk.get(i).longValue());
+                }
+
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    MediaDto d = readMedia(rs);
+                    byId.put(Long.valueOf(d.id), d);
+                }
+            } finally {
+                MediaJson.closeQuietly(rs);
+                MediaJson.closeQuietly(ps);
+            }
+        }
 
-        try {
-            ps = con.prepareStatement(sql);
-            ps.setLong(1, mediaId);
-            rs = ps.executeQuery();
-            while (rs.next()) out.add(rs.getString(1));
-            return out;
-        } finally {
-            MediaJson.closeQuietly(rs);
-            MediaJson.closeQuietly(ps);
+        List<MediaDto> out = new ArrayList<MediaDto>();
+        for (int i = 0; i < mediaIds.size(); i++) {
+            MediaDto d = byId.get(mediaIds.get(i));
+            if (d != null) out.add(d);
         }
+
+        attachTags(con, out);
+        ViewerInteractionCache.apply(con, userId, out);
+        return out;
+    }
+
+    private static MediaDto readMedia(ResultSet rs) throws SQLException {
+        MediaDto d = new MediaDto();
+        d.id = rs.getLong("id");
+        d.planetId = rs.getLong("planetId");
+        d.mediaType = rs.getString("type"); // 프론트는 mediaType 사용
+        d.url = rs.getString("url");
+        d.thumbUrl = rs.getString("thumbUrl");
+        d.displayUrl = rs.getString("displayUrl");
+        d.durationMs = rs.getObject("durationMs", Long.class);
+        d.width = rs.getObject("width", Integer.class);
+        d.height = rs.getObject("height", Integer.class);
+        d.videoCodec = rs.getString("videoCodec");
+        d.description = rs.getString("description");
+        d.location = rs.getString("locationName");
+        d.createdAt = rs.getTimestamp("createdAt");
+        return d;
+    }
+
+    private void attachTags(Connection con, List<MediaDto> list) throws SQLException {
+        if (list.isEmpty()) return;
+
+        List<Long> ids = new ArrayList<Long>(list.size());
+        for (int i = 0; i < list.size(); i++) ids.add(Long.valueOf(list.get(i).id));
+
+        Map<Long, List<String>> tags = listTagNamesForMediaIds(con, ids);
+        for (int i = 0; i < list.size(); i++) {
+            MediaDto d = list.get(i);
+            List<String> t = tags.get(Long.valueOf(d.id));
+            d.tags = (t != null) ? t : new ArrayList<String>();
+        }
+    }
+
+    /**
+     * mediaId별 태그 이름 목록 (이름 오름차순). 태그가 없는 mediaId는 맵에 없다.
+     * id가 많으면 IN_CHUNK 단위로 나눠 조회한다.
+     */
+    public Map<Long, List<String>> listTagNamesForMediaIds(Connection con, List<Long> mediaIds) throws SQLException {
+        Map<Long, List<String>> out = new HashMap<Long, List<String>>();
+
+        for (int from = 0; from < mediaIds.size(); from += IN_CHUNK) {
+            List<Long> chunk = mediaIds.subList(from, Math.min(from + IN_CHUNK, mediaIds.size()));
+            String sql =
+                    "SELECT mt.mediaId, t.name " +
+                    "FROM media_tags mt " +
+                    "JOIN tags t ON t.id = mt.tagId " +
+                    "WHERE mt.mediaId IN (" + placeholders(chunk.size()) + ") " +
+                    "ORDER BY mt.mediaId ASC, t.name ASC";
+
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            try {
+                ps = con.prepareStatement(sql);
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setLong(1 + i, chunk.get(i).longValue());
+                }
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    Long mediaId = Long.valueOf(rs.getLong(1));
+                    List<String> names = out.get(mediaId);
+                    if (names == null) {
+                        names = new ArrayList<String>();
+                        out.put(mediaId, names);
+                    }
+                    names.add(rs.getString(2));
+                }
+            } finally {
+                MediaJson.closeQuietly(rs);
+                MediaJson.closeQuietly(ps);
+            }
+        }
+        return out;
+    }
+
+    static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder(n * 2);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('?');
+        }
+        return sb.toString();
     }
 
     public void replaceMediaTags(Connection con, long mediaId, List<String> tagNames) throws SQLException {
@@ -255,56 +485,54 @@ public class MediaDao {
             MediaJson.closeQuietly(del);
         }
 
-        if (tagNames == null || tagNames.isEmpty()) return;
-
-        for (int i = 0; i < tagNames.size(); i++) {
-            String n = tagNames.get(i);
-            if (n == null) continue;
-            n = n.trim();
-            if (n.isEmpty()) continue;
-
-            long tagId = findOrCreateTag(con, n);
-            linkMediaTag(con, mediaId, tagId);
-        }
+        Map<Long, List<String>> one = new HashMap<Long, List<String>>();
+        one.put(Long.valueOf(mediaId), tagNames);
+        linkMediaTags(con, one);
     }
 
-    private long findOrCreateTag(Connection con, String name) throws SQLException {
-        PreparedStatement ps = null;
-        ResultSet rs = null;
-        try {
-            ps = con.prepareStatement("SELECT id FROM tags WHERE name=? LIMIT 1");
-            ps.setString(1, name);
-            rs = ps.executeQuery();
-            if (rs.next()) return rs.getLong(1);
-        } finally {
-            MediaJson.closeQuietly(rs);
-            MediaJson.closeQuietly(ps);
-        }
-
-        PreparedStatement ins = null;
-        ResultSet keys = null;
-        try {
-            ins = con.prepareStatement("INSERT INTO tags (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
-            ins.setString(1, name);
-            ins.executeUpdate();
-            keys = ins.getGeneratedKeys();
-            if (!keys.next()) throw new SQLException("Failed to get tagId");
-            return keys.getLong(1);
-        } finally {
-            MediaJson.closeQuietly(keys);
-            MediaJson.closeQuietly(ins);
-        }
-    }
+    /**
+     * mediaId별 태그를 한 번의 batch로 연결한다 (rewriteBatchedStatements로 multi-row INSERT가 된다).
+     * 반환값: mediaId별 실제 연결된 태그 이름 - 응답 DTO를 다시 조회하지 않기 위함.
+     * 이름은 보낸 값이 아니라 tags에 저장된 이름이고, listTagNamesForMediaIds(ORDER BY t.name)와 같은 순서다
+     * (tags.name은 utf8mb4_general_ci라 대소문자 무시 순서).
+     */
+    public Map<Long, List<String>> linkMediaTags(Connection con, Map<Long, List<String>> tagNamesByMedia) throws SQLException {
+        Map<Long, List<String>> linked = new HashMap<Long, List<String>>();
 
-    private void linkMediaTag(Connection con, long mediaId, long tagId) throws SQLException {
         PreparedStatement ps = null;
         try {
-            ps = con.prepareStatement("INSERT IGNORE INTO media_tags (mediaId, tagId) VALUES (?,?)");
-            ps.setLong(1, mediaId);
-            ps.setLong(2, tagId);
-            ps.executeUpdate();
+            int pending = 0;
+            for (Map.Entry<Long, List<String>> e : tagNamesByMedia.entrySet()) {
+                List<String> names = e.getValue();
+                if (names == null || names.isEmpty()) continue;
+
+                Map<Long, String> byTagId = new LinkedHashMap<Long, String>();
+                for (int i = 0; i < names.size(); i++) {
+                    String n = names.get(i);
+                    if (n == null) continue;
+                    n = n.trim();
+                    if (n.isEmpty()) continue;
+
+                    Long tagId = Long.valueOf(TagDictionary.idFor(n)); // 대부분 DB 왕복 없음
+                    if (byTagId.containsKey(tagId)) continue;
+                    String stored = TagDictionary.nameOf(tagId.longValue());
+                    byTagId.put(tagId, stored != null ? stored : n);
+
+                    if (ps == null) ps = con.prepareStatement("INSERT IGNORE INTO media_tags (mediaId, tagId) VALUES (?,?)");
+                    ps.setLong(1, e.getKey().longValue());
+                    ps.setLong(2, tagId.longValue());
+                    ps.addBatch();
+                    pending++;
+                }
+
+                List<String> sorted = new ArrayList<String>(byTagId.values());
+                Collections.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+                linked.put(e.getKey(), sorted);
+            }
+            if (pending > 0) ps.executeBatch();
         } finally {
             MediaJson.closeQuietly(ps);
         }
+        return linked;
     }
 }
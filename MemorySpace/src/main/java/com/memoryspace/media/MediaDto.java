@@ -10,6 +10,14 @@ public class MediaDto {
     // 프론트 usePlanetSystem이 mediaType을 사용하므로 이름을 맞춤
     public String mediaType; // "image" | "video"
     public String url;
+    public String thumbUrl;   // 파생본 (생성 전이거나 영상이면 null)
+    public String displayUrl; // 파생본 (생성 전이거나 영상이면 null)
+
+    // 영상 메타데이터 (이미지/알 수 없으면 null)
+    public Long durationMs;
+    public Integer width;
+    public Integer height;
+    public String videoCodec;
 
     public String description; // nullable
     public String location;    // nullable
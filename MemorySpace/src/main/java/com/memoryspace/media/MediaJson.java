@@ -60,6 +60,12 @@ public class MediaJson {
                 + ",\"planetId\":" + m.planetId
                 + ",\"mediaType\":" + jstr(m.mediaType)
                 + ",\"url\":" + jstr(m.url)
+                + ",\"thumbUrl\":" + jstrOrNull(m.thumbUrl)
+                + ",\"displayUrl\":" + jstrOrNull(m.displayUrl)
+                + ",\"durationMs\":" + (m.durationMs == null ? "null" : String.valueOf(m.durationMs))
+                + ",\"width\":" + (m.width == null ? "null" : String.valueOf(m.width))
+                + ",\"height\":" + (m.height == null ? "null" : String.valueOf(m.height))
+                + ",\"videoCodec\":" + jstrOrNull(m.videoCodec)
                 + ",\"description\":" + jstrOrNull(m.description)
                 + ",\"location\":" + jstrOrNull(m.location)
                 + ",\"tags\":" + jsonArray(m.tags)
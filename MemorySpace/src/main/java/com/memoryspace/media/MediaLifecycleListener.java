@@ -0,0 +1,29 @@
+package com.memoryspace.media;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+
+/**
+ * 웹앱 시작 시 업로드 파일 GC와 업로드 세션 정리를 예약하고,
+ * 종료(재배포 포함) 시 업로드 staging / 업로드 세션 / 파생 이미지 / GC 스레드와 hot 캐시를 정리한다.
+ */
+@WebListener
+public class MediaLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        BlobGarbageCollector.start();
+        UploadSessions.start();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        BlobGarbageCollector.stop();
+        UploadSessions.stop();
+        MediaUpload.shutdown();
+        ImageDerivatives.shutdown();
+        ImageResizer.shutdown();
+        HotBlobCache.clear();
+    }
+}
@@ -0,0 +1,105 @@
+package com.memoryspace.media;
+
+import com.memoryspace.storage.BlobInfo;
+import com.memoryspace.storage.BlobStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 저장 파일명 -> {검증된 MIME, 크기, 수정 시각, 위치} 메모리 색인. UploadsServlet 미스 경로에서 쓴다.
+ *
+ * - 업로드 때 ContentSniffer로 판별한 MIME을 planet_media.mimeType에 저장하고, 같은 값을 record()로 여기에 넣는다
+ * - 색인에 있으면 stat/probeContentType 없이 응답 헤더를 만든다 (revalidateMs마다 한 번만 stat으로 확인)
+ * - 색인에 없으면(재시작 후, 예전 파일, 파생본) stat 한 번과 앞부분 64바이트를 읽어 판별한 뒤 넣는다.
+ *   예전 행의 mimeType은 클라이언트 값이라 DB를 조회하지 않고 내용으로 다시 판별한다
+ * - GC가 파일을 지우면 invalidate()로 뺀다
+ */
+public final class MediaMetaIndex {
+
+    private static final int MAX_ENTRIES =
+            Integer.getInteger("memoryspace.uploads.metaIndex.maxEntries", 100000);
+    private static final long REVALIDATE_MS =
+            Long.getLong("memoryspace.uploads.metaIndex.revalidateMs", 300000L);
+
+    // accessOrder=true -> LRU, MAX_ENTRIES 초과 시 가장 오래 안 쓴 것부터 제거
+    private static final LinkedHashMap<String, Meta> MAP =
+            new LinkedHashMap<String, Meta>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Meta> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private MediaMetaIndex() {}
+
+    static final class Meta {
+        final BlobInfo info;
+        final String mime;
+        volatile long checkedAt;
+
+        Meta(BlobInfo info, String mime) {
+            this.info = info;
+            this.mime = mime;
+            this.checkedAt = System.currentTimeMillis();
+        }
+    }
+
+    /** name의 메타데이터. 파일이 없으면 null. */
+    static Meta get(BlobStore store, String name) throws IOException {
+        Meta m;
+        synchronized (MAP) {
+            m = MAP.get(name);
+        }
+        long now = System.currentTimeMillis();
+        if (m != null && now - m.checkedAt <= REVALIDATE_MS) return m;
+
+        BlobInfo info = store.stat(name);
+        if (info == null) {
+            invalidate(name);
+            return null;
+        }
+        if (m != null && m.info.size == info.size && m.info.lastModified == info.lastModified) {
+            m.checkedAt = now;
+            return m;
+        }
+
+        Meta fresh = new Meta(info, sniff(store, name));
+        synchronized (MAP) {
+            MAP.put(name, fresh);
+        }
+        return fresh;
+    }
+
+    /** 업로드/파생본 저장 직후 호출. mime은 ContentSniffer로 판별한 값. */
+    public static void record(String name, BlobInfo info, String mime) {
+        if (info == null || mime == null) return;
+        synchronized (MAP) {
+            MAP.put(name, new Meta(info, mime));
+        }
+    }
+
+    public static void invalidate(String name) {
+        synchronized (MAP) {
+            MAP.remove(name);
+        }
+    }
+
+    private static String sniff(BlobStore store, String name) throws IOException {
+        byte[] head = new byte[ContentSniffer.HEAD_BYTES];
+        int n = 0;
+        try (InputStream in = store.openRange(name, 0, head.length)) {
+            while (n < head.length) {
+                int r = in.read(head, n, head.length - n);
+                if (r < 0) break;
+                n += r;
+            }
+        }
+        String mime = ContentSniffer.sniff(head, n);
+        if (mime == null) mime = URLConnection.guessContentTypeFromName(name);
+        return mime != null ? mime : "application/octet-stream";
+    }
+}
@@ -0,0 +1,8 @@
+package com.memoryspace.media;
+
+import java.util.List;
+
+public class MediaPage {
+    public List<MediaDto> items;
+    public String nextCursor; // 마지막 페이지면 null
+}
@@ -2,6 +2,7 @@ package com.memoryspace.media;
 
 import jakarta.servlet.http.*;
 
+import java.net.URLDecoder;
 import java.util.*;
 
 public class MediaRequest {
@@ -20,6 +21,27 @@ public class MediaRequest {
         try { return Long.parseLong(s.trim()); } catch (Exception e) { return def; }
     }
 
+    /**
+     * 쿼리스트링에서만 읽는다. getParameter()는 multipart 요청에서 본문 전체를 파싱하므로
+     * 본문을 받기 전에 확인해야 하는 값(planetId 등)은 이걸로 읽는다.
+     */
+    public static String queryParam(HttpServletRequest req, String name) {
+        String q = req.getQueryString();
+        if (q == null || q.isEmpty()) return null;
+        for (String kv : q.split("&")) {
+            int eq = kv.indexOf('=');
+            String k = eq < 0 ? kv : kv.substring(0, eq);
+            if (!name.equals(k)) continue;
+            if (eq < 0) return "";
+            try {
+                return URLDecoder.decode(kv.substring(eq + 1), "UTF-8");
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     public static Part part(HttpServletRequest req, String name) {
         try { return req.getPart(name); } catch (Exception e) { return null; }
     }
@@ -70,6 +92,14 @@ public class MediaRequest {
         return fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
     }
 
+    /** read-your-writes 판단용 사용자 키 (세션의 loginId, UnitOfWorkFilter와 같은 값). 없으면 null */
+    public static String getSessionLoginId(HttpServletRequest req) {
+        HttpSession s = req.getSession(false);
+        if (s == null) return null;
+        Object v = s.getAttribute("loginId");
+        return (v instanceof String) ? (String) v : null;
+    }
+
     public static Long getSessionUserId(HttpServletRequest req) {
         HttpSession s = req.getSession(false);
         if (s == null) return null;
@@ -1,19 +1,32 @@
 package com.memoryspace.media;
 
 import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.db.UnitOfWork;
+import com.memoryspace.storage.BlobRefDao;
+import com.memoryspace.storage.StorageQuotaExceededException;
+import com.memoryspace.storage.StorageUsageDao;
 
 import jakarta.servlet.http.*;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class MediaService {
 
+    // 목록 페이지 크기 (limit 파라미터)
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final MediaDao dao = new MediaDao();
     private final MediaUpload upload = new MediaUpload();
+    private final BlobRefDao blobRefs = new BlobRefDao();
+    private final StorageUsageDao storage = new StorageUsageDao();
 
     public void handleList(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         Long userId = MediaRequest.getSessionUserId(req);
@@ -28,23 +41,52 @@ public class MediaService {
             return;
         }
 
+        // ✅ limit/cursor 중 하나라도 오면 keyset 페이지 응답, 둘 다 없으면 기존 전체 목록 응답
+        String limitParam = req.getParameter("limit");
+        String cursorParam = req.getParameter("cursor");
+        boolean paged = limitParam != null || cursorParam != null;
+
+        int limit = (int) MediaRequest.parseLong(limitParam, DEFAULT_PAGE_SIZE);
+        if (limit <= 0) limit = DEFAULT_PAGE_SIZE;
+        if (limit > MAX_PAGE_SIZE) limit = MAX_PAGE_SIZE;
+
+        MediaCursor after = null;
+        if (cursorParam != null && !cursorParam.trim().isEmpty()) {
+            after = MediaCursor.decode(cursorParam);
+            if (after == null) {
+                MediaJson.sendJson(resp, 400, MediaJson.fail("invalid cursor"));
+                return;
+            }
+        }
+
         Connection con = null;
         try {
-            con = DBConnectionUtil.getConnection();
+            // 목록 조회는 읽기 전용 -> replica (방금 업로드한 사용자는 primary)
+            con = DBConnectionUtil.getReadConnection();
 
             if (!dao.isPlanetOwner(con, planetId, userId.longValue())) {
                 MediaJson.sendJson(resp, 403, MediaJson.fail("Forbidden"));
                 return;
             }
 
-            List<MediaDto> list = dao.listMedia(con, planetId, userId.longValue());
+            List<MediaDto> list;
+            String nextCursor = null;
+            if (paged) {
+                MediaPage page = dao.listMediaPage(con, planetId, userId.longValue(), after, limit);
+                list = page.items;
+                nextCursor = page.nextCursor;
+            } else {
+                list = dao.listMedia(con, planetId, userId.longValue());
+            }
 
             List<String> items = new ArrayList<String>();
             for (int i = 0; i < list.size(); i++) {
                 items.add(MediaJson.mediaToJson(list.get(i)));
             }
 
-            MediaJson.sendJson(resp, 200, "{\"success\":true,\"media\":[" + MediaJson.join(items) + "]}");
+            String json = "{\"success\":true,\"media\":[" + MediaJson.join(items) + "]";
+            if (paged) json += ",\"nextCursor\":" + MediaJson.jstr(nextCursor);
+            MediaJson.sendJson(resp, 200, json + "}");
 
         } catch (Exception e) {
             MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
@@ -60,12 +102,39 @@ public class MediaService {
             return;
         }
 
-        long planetId = MediaRequest.parseLong(req.getParameter("planetId"), -1);
+        // planetId는 쿼리스트링에서 먼저 찾는다 (getParameter는 multipart 본문 전체를 읽어 버린다).
+        // 폼 필드로만 보내는 예전 클라이언트는 본문을 받은 뒤에 아래 확인을 한다.
+        String planetParam = MediaRequest.queryParam(req, "planetId");
+        if (planetParam == null) planetParam = req.getParameter("planetId");
+        long planetId = MediaRequest.parseLong(planetParam, -1);
         if (planetId <= 0) {
             MediaJson.sendJson(resp, 400, MediaJson.fail("planetId is required"));
             return;
         }
 
+        // 1) 소유자 / 용량 확인 (트랜잭션 밖, 짧게)
+        Connection con = null;
+        try {
+            con = DBConnectionUtil.getConnection();
+            if (!dao.isPlanetOwner(con, planetId, userId.longValue())) {
+                MediaJson.sendJson(resp, 403, MediaJson.fail("Forbidden"));
+                return;
+            }
+            // Content-Length가 남은 용량보다 크면 거절 (planetId가 쿼리에 있으면 바이트를 받기 전. 정확한 확인은 커밋 트랜잭션에서)
+            if (!storage.fits(con, userId.longValue(), req.getContentLengthLong())) {
+                sendQuotaExceeded(resp);
+                return;
+            }
+        } catch (Exception e) {
+            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+            return;
+        } finally {
+            MediaJson.closeQuietly(con);
+        }
+
+        // 본문 수신(getParts)과 디스크 쓰기 동안 요청 공유 커넥션을 풀에 돌려준다
+        UnitOfWork.releaseConnection();
+
         // ✅ [PATCH] "files" 멀티파트를 표준 req.getParts()로 직접 수집 (단일 저장 문제 방지)
         List<Part> files = new ArrayList<Part>();
         try {
@@ -93,54 +162,140 @@ public class MediaService {
             return;
         }
 
-        Connection con = null;
+        // 2) ✅ 파일은 트랜잭션 밖에서 병렬로 staging
+        List<StoredUpload> staged;
         try {
-            con = DBConnectionUtil.getConnection();
-            con.setAutoCommit(false);
+            staged = upload.stageAll(files);
+        } catch (IOException e) {
+            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+            return;
+        }
 
-            if (!dao.isPlanetOwner(con, planetId, userId.longValue())) {
-                con.rollback();
-                MediaJson.sendJson(resp, 403, MediaJson.fail("Forbidden"));
-                return;
-            }
+        // ✅ [PATCH] 프론트가 description0/location0/tags0 ... 형태로 보낼 수 있으므로 인덱스별로 읽기
+        // (기존 단일 description/location/tags도 fallback으로 유지)
+        List<NewMedia> rows = new ArrayList<NewMedia>();
+        for (int i = 0; i < files.size(); i++) {
+            NewMedia m = new NewMedia();
+            m.description = paramIndexed(req, "description", i);
+            m.locationName = paramIndexed(req, "location", i);
+            m.tagNames = MediaRequest.parseTags(paramIndexed(req, "tags", i));
+            m.stored = staged.get(i);
+            rows.add(m);
+        }
 
-            // ✅ [PATCH] 프론트가 description0/location0/tags0 ... 형태로 보낼 수 있으므로 인덱스별로 읽기
-            // (기존 단일 description/location/tags도 fallback으로 유지)
+        // 3) 짧은 트랜잭션: INSERT + 태그 연결 + 파일 promote 후 커밋
+        try {
+            List<MediaDto> created = persistUploads(planetId, rows);
 
             List<String> createdJson = new ArrayList<String>();
+            for (int i = 0; i < created.size(); i++) {
+                createdJson.add(MediaJson.mediaToJson(created.get(i)));
+            }
+            MediaJson.sendJson(resp, 201, "{\"success\":true,\"media\":[" + MediaJson.join(createdJson) + "]}");
 
-            for (int i = 0; i < files.size(); i++) {
-                Part part = files.get(i);
-                if (part == null || part.getSize() <= 0) continue;
+        } catch (StorageQuotaExceededException e) {
+            sendQuotaExceeded(resp);
+        } catch (Exception e) {
+            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+        }
+    }
 
-                String description = paramIndexed(req, "description", i);
-                String locationName = paramIndexed(req, "location", i);
-                String tagsCsv = paramIndexed(req, "tags", i);
+    static void sendQuotaExceeded(HttpServletResponse resp) throws IOException {
+        MediaJson.sendJson(resp, 413, MediaJson.fail("Storage quota exceeded"));
+    }
 
-                List<String> tagNames = MediaRequest.parseTags(tagsCsv);
+    /**
+     * staging 된 업로드들을 한 트랜잭션으로 등록한다.
+     * 행 INSERT/태그 연결 후 파일을 공개 위치로 promote 하고 커밋한다.
+     * 어느 단계든 실패하면 롤백하고 staging/promote 된 파일을 모두 지운 뒤 예외를 던진다.
+     * 소유자의 저장 용량을 넘으면 StorageQuotaExceededException.
+     */
+    List<MediaDto> persistUploads(long planetId, List<NewMedia> rows) throws Exception {
+        List<StoredUpload> files = new ArrayList<StoredUpload>();
+        for (int i = 0; i < rows.size(); i++) files.add(rows.get(i).stored);
 
-                StoredUpload stored = upload.store(part);
-                long mediaId = dao.insertMedia(con, planetId, stored, description, locationName);
+        Connection con = null;
+        boolean committed = false;
+        try {
+            con = DBConnectionUtil.getConnection();
 
-                if (!tagNames.isEmpty()) {
-                    dao.replaceMediaTags(con, mediaId, tagNames);
-                }
+            // 새 태그는 트랜잭션 밖에서 같은 커넥션으로 만든다 (트랜잭션 중에 커넥션을 더 빌리지 않는다)
+            List<String> tagNames = new ArrayList<String>();
+            for (int i = 0; i < rows.size(); i++) {
+                if (rows.get(i).tagNames != null) tagNames.addAll(rows.get(i).tagNames);
+            }
+            TagDictionary.prepare(con, tagNames);
 
-                MediaDto dto = dao.getMediaOne(con, mediaId, userId.longValue());
-                if (dto != null) {
-                    createdJson.add(MediaJson.mediaToJson(dto));
-                }
+            con.setAutoCommit(false);
+
+            // ✅ 파일 행은 multi-row INSERT 한 번, 태그 연결은 batch 한 번
+            dao.insertMediaRows(con, planetId, rows);
+
+            Map<Long, List<String>> tagsByMedia = new HashMap<Long, List<String>>();
+            for (int i = 0; i < rows.size(); i++) {
+                tagsByMedia.put(Long.valueOf(rows.get(i).id), rows.get(i).tagNames);
+            }
+            Map<Long, List<String>> linked = dao.linkMediaTags(con, tagsByMedia);
+
+            // 내용 주소 blob 참조 카운트 (행 INSERT와 같은 트랜잭션)
+            List<String> names = new ArrayList<String>();
+            List<String> hashes = new ArrayList<String>();
+            List<Long> sizes = new ArrayList<Long>();
+            for (int i = 0; i < files.size(); i++) {
+                StoredUpload f = files.get(i);
+                if (f.sha256 == null) continue;
+                names.add(f.savedName);
+                hashes.add(f.sha256);
+                sizes.add(Long.valueOf(f.sizeBytes));
             }
+            blobRefs.increment(con, names, hashes, sizes);
+
+            // 사용자/전체 용량 카운터 (같은 트랜잭션, 넘으면 여기서 롤백)
+            long total = 0;
+            for (int i = 0; i < files.size(); i++) total += files.get(i).sizeBytes;
+            storage.reserve(con, storage.ownerOfPlanet(con, planetId), total, files.size());
+
+            for (int i = 0; i < files.size(); i++) upload.promote(files.get(i));
 
             con.commit();
-            MediaJson.sendJson(resp, 201, "{\"success\":true,\"media\":[" + MediaJson.join(createdJson) + "]}");
+            committed = true;
 
-        } catch (Exception e) {
-            if (con != null) {
-                try { con.rollback(); } catch (Exception ignored) {}
+            // 썸네일/표시용 파생본은 커밋 후 백그라운드에서
+            List<String> imageUrls = new ArrayList<String>();
+            for (int i = 0; i < files.size(); i++) {
+                if ("image".equals(files.get(i).type)) imageUrls.add(files.get(i).publicUrl);
             }
-            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+            ImageDerivatives.submit(imageUrls);
+
+            // ✅ 응답 DTO는 다시 SELECT 하지 않고 가진 값으로 만든다 (새 미디어라 liked/starred/reported는 false)
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<MediaDto> out = new ArrayList<MediaDto>();
+            for (int i = 0; i < rows.size(); i++) {
+                NewMedia m = rows.get(i);
+                MediaDto d = new MediaDto();
+                d.id = m.id;
+                d.planetId = planetId;
+                d.mediaType = m.stored.type;
+                d.url = m.stored.publicUrl;
+                d.durationMs = m.stored.durationMs;
+                d.width = m.stored.width;
+                d.height = m.stored.height;
+                d.videoCodec = m.stored.videoCodec;
+                d.description = m.description;
+                d.location = m.locationName;
+                d.tags = linked.containsKey(Long.valueOf(m.id)) ? linked.get(Long.valueOf(m.id)) : new ArrayList<String>();
+                d.createdAt = now;
+                out.add(d);
+            }
+            return out;
+
         } finally {
+            if (!committed) {
+                if (con != null) {
+                    try { con.rollback(); } catch (Exception ignored) {}
+                }
+                upload.discardAll(files);
+            }
             if (con != null) {
                 try { con.setAutoCommit(true); } catch (Exception ignored) {}
             }
@@ -166,32 +321,32 @@ public class MediaService {
         String description = req.getParameter("description"); // nullable
         String locationName = req.getParameter("location");   // nullable
         String tagsCsv = req.getParameter("tags");            // nullable
+        List<String> tagNames = (tagsCsv != null) ? MediaRequest.parseTags(tagsCsv) : null;
 
         Connection con = null;
         try {
             con = DBConnectionUtil.getConnection();
-            con.setAutoCommit(false);
 
             if (!dao.isPlanetOwner(con, planetId, userId.longValue())) {
-                con.rollback();
                 MediaJson.sendJson(resp, 403, MediaJson.fail("Forbidden"));
                 return;
             }
 
             if (!dao.mediaBelongsToPlanet(con, mediaId, planetId)) {
-                con.rollback();
                 MediaJson.sendJson(resp, 404, MediaJson.fail("Media not found"));
                 return;
             }
 
+            TagDictionary.prepare(con, tagNames); // 트랜잭션 시작 전
+            con.setAutoCommit(false);
+
             MediaMetaDto meta = new MediaMetaDto();
             meta.description = description;     // null 가능
             meta.locationName = locationName;   // null 가능
 
             dao.updateMediaMeta(con, mediaId, planetId, meta);
 
-            if (tagsCsv != null) {
-                List<String> tagNames = MediaRequest.parseTags(tagsCsv);
+            if (tagNames != null) {
                 dao.replaceMediaTags(con, mediaId, tagNames);
             }
 
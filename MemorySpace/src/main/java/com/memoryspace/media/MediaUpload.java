@@ -1,37 +1,115 @@
 package com.memoryspace.media;
 
+import com.memoryspace.storage.BlobStore;
+import com.memoryspace.storage.BlobStores;
+import com.memoryspace.storage.ContentHash;
+
 import jakarta.servlet.http.Part;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.*;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 업로드 파일 저장.
+ *
+ * stage()로 STAGING_DIR에 먼저 쓰고, DB 행이 들어간 뒤 promote()로 UPLOAD_DIR에 원자적으로 옮긴다.
+ * 트랜잭션이 실패하면 discardAll()로 정리한다. (DB 트랜잭션 동안 디스크 복사를 하지 않기 위함)
+ *
+ * 내용 주소 모드(UploadConfig.CONTENT_ADDRESSED)에서는 복사하면서 SHA-256을 계산해 파일명으로 쓴다.
+ * 같은 내용이 이미 있으면 promote 때 staging 파일만 버리고 기존 파일을 공유한다.
+ *
+ * 영상은 staging 직후 Mp4FastStart로 moov를 앞으로 옮겨(필요할 때만) 바로 재생이 시작되게 한다.
+ */
 public class MediaUpload {
 
-    private static final String UPLOAD_DIR = UploadConfig.UPLOAD_DIR;
     private static final String PUBLIC_PREFIX = UploadConfig.PUBLIC_PREFIX;
 
+    private final BlobStore store = BlobStores.get();
+
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+    private static final ExecutorService STAGING_POOL =
+            Executors.newFixedThreadPool(UploadConfig.STAGING_THREADS, r -> {
+                Thread t = new Thread(r, "upload-staging-" + THREAD_SEQ.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** 바로 최종 위치에 저장 (stage + promote). */
     public StoredUpload store(Part part) throws IOException {
-        Files.createDirectories(Paths.get(UPLOAD_DIR));
+        StoredUpload out = stage(part);
+        promote(out);
+        return out;
+    }
 
-        String original = MediaRequest.safeFileName(part.getSubmittedFileName());
-        String mime = part.getContentType();
-        long size = part.getSize();
+    /**
+     * 여러 파일을 공유 스레드 풀에서 병렬로 staging 한다. 결과 순서는 parts 순서와 같다.
+     * 하나라도 실패하면 이미 staging 된 파일을 지우고 예외를 던진다.
+     */
+    public List<StoredUpload> stageAll(List<Part> parts) throws IOException {
+        List<Future<StoredUpload>> futures = new ArrayList<Future<StoredUpload>>();
+        for (int i = 0; i < parts.size(); i++) {
+            final Part part = parts.get(i);
+            futures.add(STAGING_POOL.submit(() -> stage(part)));
+        }
 
-        boolean isVideo = mime != null && mime.toLowerCase(Locale.ROOT).startsWith("video/");
-        boolean isImage = mime != null && mime.toLowerCase(Locale.ROOT).startsWith("image/");
-        if (!isImage && !isVideo) {
-            throw new IOException("Unsupported file type: " + mime);
+        List<StoredUpload> out = new ArrayList<StoredUpload>();
+        IOException failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                out.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    Throwable c = e.getCause();
+                    failure = (c instanceof IOException) ? (IOException) c : new IOException(c);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) failure = new IOException("staging interrupted");
+            }
         }
 
+        if (failure != null) {
+            for (int i = 0; i < futures.size(); i++) futures.get(i).cancel(true);
+            discardAll(out);
+            throw failure;
+        }
+        return out;
+    }
+
+    public StoredUpload stage(Part part) throws IOException {
+        Files.createDirectories(Paths.get(UploadConfig.STAGING_DIR));
+
+        String original = MediaRequest.safeFileName(part.getSubmittedFileName());
+        long size = part.getSize();
+
         String ext = MediaRequest.extensionOf(original);
         String savedName = UUID.randomUUID().toString().replace("-", "") + (ext.isEmpty() ? "" : "." + ext);
 
-        Path dest = Paths.get(UPLOAD_DIR, savedName);
+        Path staged = Paths.get(UploadConfig.STAGING_DIR, savedName);
+        String sha256 = null;
+        String mime;
         try (InputStream in = part.getInputStream()) {
-            Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+            if (UploadConfig.CONTENT_ADDRESSED) {
+                sha256 = ContentHash.copyAndHash(in, staged);
+                savedName = ContentHash.blobName(sha256, ext);
+            } else {
+                Files.copy(in, staged, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // ✅ 클라이언트가 보낸 Content-Type 대신 실제 내용으로 판별
+            mime = ContentSniffer.sniff(staged);
+            if (mime == null) throw new IOException("Unsupported file type: " + part.getContentType());
+        } catch (IOException e) {
+            Files.deleteIfExists(staged);
+            throw e;
         }
 
         StoredUpload out = new StoredUpload();
@@ -40,7 +118,61 @@ public class MediaUpload {
         out.originalName = original;
         out.mimeType = mime;
         out.sizeBytes = size;
-        out.type = isVideo ? "video" : "image";
+        out.type = ContentSniffer.isVideo(mime) ? "video" : "image";
+        out.sha256 = sha256;
+        out.stagedPath = staged;
+        if ("video".equals(out.type)) applyFastStart(out);
         return out;
     }
+
+    /**
+     * staging 된 영상을 faststart로 바꾸고 메타데이터를 채운다.
+     * 다시 쓴 경우 크기와 (내용 주소 모드면) 해시/이름도 새 내용 기준으로 바꾼다.
+     */
+    static void applyFastStart(StoredUpload u) {
+        Mp4FastStart.Result r = Mp4FastStart.process(u.stagedPath, u.sha256 != null);
+        if (r == null) return;
+
+        if (r.rewritten) {
+            u.sizeBytes = r.sizeBytes;
+            if (u.sha256 != null) {
+                u.sha256 = r.sha256;
+                u.savedName = ContentHash.blobName(r.sha256, MediaRequest.extensionOf(u.originalName));
+                u.publicUrl = PUBLIC_PREFIX + u.savedName;
+            }
+        }
+        u.durationMs = r.durationMs;
+        u.width = r.width;
+        u.height = r.height;
+        u.videoCodec = r.videoCodec;
+    }
+
+    /** staging 파일을 BlobStore로 원자적으로 옮긴다. 같은 내용의 blob이 이미 있으면 staging만 지운다. */
+    public void promote(StoredUpload u) throws IOException {
+        if (u.stagedPath == null) return;
+        store.put(u.savedName, u.stagedPath);
+        u.stagedPath = null;
+        MediaMetaIndex.record(u.savedName, store.stat(u.savedName), u.mimeType);
+    }
+
+    /**
+     * 트랜잭션 실패 정리용. promote 전이면 staging 파일을, 후면 공개 파일을 지운다.
+     * 내용 주소 blob은 다른 업로드가 이미 공유하고 있을 수 있으므로 지우지 않고 GC에 맡긴다.
+     */
+    public void discardAll(List<StoredUpload> uploads) {
+        for (int i = 0; i < uploads.size(); i++) {
+            StoredUpload u = uploads.get(i);
+            if (u.stagedPath == null && u.sha256 != null) continue;
+            try {
+                if (u.stagedPath != null) Files.deleteIfExists(u.stagedPath);
+                else store.delete(u.savedName);
+            } catch (IOException e) {
+                System.err.println("[upload] cleanup failed: " + u.savedName + " (" + e.getMessage() + ")");
+            }
+        }
+    }
+
+    static void shutdown() {
+        STAGING_POOL.shutdownNow();
+    }
 }
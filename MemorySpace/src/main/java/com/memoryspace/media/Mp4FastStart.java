@@ -0,0 +1,320 @@
+package com.memoryspace.media;
+
+import com.memoryspace.storage.ContentHash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MP4(ISO BMFF: mp4/m4v/mov/3gp) "faststart" 변환과 메타데이터 추출.
+ *
+ * 휴대폰 영상은 moov(색인)가 파일 끝에 있는 경우가 많아 브라우저가 거의 다 받아야 재생을 시작한다.
+ * process()는 staging 파일을 박스 단위로 훑어서
+ * - moov가 mdat 뒤에 있으면 moov를 mdat 앞으로 옮기고 stco/co64 청크 오프셋을 보정해 다시 쓴다
+ * - mvhd/tkhd/hdlr/stsd에서 재생 시간, 해상도(회전 반영), 코덱을 읽는다
+ * MP4가 아니거나 구조를 해석할 수 없으면 파일은 건드리지 않고 null을 돌려준다 (업로드는 그대로 진행).
+ */
+public final class Mp4FastStart {
+
+    // moov는 메모리에 읽어서 고친다. 이보다 크면 (사실상 없음) 건너뛴다.
+    private static final long MAX_MOOV_BYTES = 64L * 1024 * 1024;
+
+    private Mp4FastStart() {}
+
+    public static final class Result {
+        public boolean rewritten;
+        public long sizeBytes;    // 처리 후 파일 크기
+        public String sha256;     // rewritten && 해시 요청 시, 새 내용의 SHA-256
+        public Long durationMs;
+        public Integer width;
+        public Integer height;
+        public String videoCodec; // stsd 샘플 엔트리 이름 (avc1, hvc1, av01 ...)
+    }
+
+    /**
+     * file을 제자리에서 faststart로 바꾸고 메타데이터를 돌려준다. MP4가 아니면 null.
+     * @param hash 다시 쓴 경우 새 내용의 SHA-256도 계산할지 (내용 주소 이름용)
+     */
+    public static Result process(Path file, boolean hash) {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Box> top = readTopLevel(ch);
+            if (top == null || top.isEmpty() || !"ftyp".equals(top.get(0).type)) return null;
+
+            Box moov = null, firstMdat = null;
+            for (Box b : top) {
+                if ("moov".equals(b.type) && moov == null) moov = b;
+                if ("mdat".equals(b.type) && firstMdat == null) firstMdat = b;
+            }
+            if (moov == null || moov.size > MAX_MOOV_BYTES) return null;
+
+            ByteBuffer moovBytes = ByteBuffer.allocate((int) moov.size);
+            readFully(ch, moovBytes, moov.offset);
+            moovBytes.flip();
+
+            Result r = new Result();
+            r.sizeBytes = ch.size();
+            readMeta(moovBytes, moov.header, r);
+
+            if (firstMdat == null || moov.offset < firstMdat.offset) return r; // 이미 faststart
+
+            // mdat 앞으로 moov.size만큼 밀리는 구간 [firstMdat.offset, moov.offset)의 오프셋을 보정
+            if (!shiftChunkOffsets(moovBytes, moov.header, firstMdat.offset, moov.offset, moov.size)) {
+                return r; // stco 32비트 초과 등: 원본 유지
+            }
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".faststart");
+            MessageDigest md = hash ? ContentHash.newDigest() : null;
+            try {
+                try (FileChannel out = FileChannel.open(tmp,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    copyRange(ch, 0, firstMdat.offset, out, md);
+                    moovBytes.rewind();
+                    write(out, moovBytes, md);
+                    copyRange(ch, firstMdat.offset, moov.offset - firstMdat.offset, out, md);
+                    long tail = moov.offset + moov.size;
+                    copyRange(ch, tail, ch.size() - tail, out, md);
+                    out.force(false);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            r.rewritten = true;
+            r.sha256 = md != null ? ContentHash.hex(md.digest()) : null;
+            return r;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[mp4] skip " + file.getFileName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ---------- 박스 구조 ----------
+
+    private static final class Box {
+        final String type;
+        final long offset;
+        final long size;
+        final int header;
+
+        Box(String type, long offset, long size, int header) {
+            this.type = type;
+            this.offset = offset;
+            this.size = size;
+            this.header = header;
+        }
+    }
+
+    /** 최상위 박스 목록. 크기가 파일과 맞지 않으면 null. */
+    private static List<Box> readTopLevel(FileChannel ch) throws IOException {
+        long len = ch.size();
+        List<Box> out = new ArrayList<Box>();
+        ByteBuffer h = ByteBuffer.allocate(16);
+        long pos = 0;
+        while (pos + 8 <= len) {
+            h.clear();
+            h.limit((int) Math.min(16, len - pos));
+            readFully(ch, h, pos);
+            h.flip();
+
+            long size = h.getInt() & 0xFFFFFFFFL;
+            String type = fourcc(h);
+            int header = 8;
+            if (size == 1) {
+                if (h.remaining() < 8) return null;
+                size = h.getLong();
+                header = 16;
+            } else if (size == 0) {
+                size = len - pos; // 파일 끝까지
+            }
+            if (size < header || pos + size > len) return null;
+
+            out.add(new Box(type, pos, size, header));
+            pos += size;
+        }
+        return out;
+    }
+
+    /** buf[start, end) 안의 자식 박스들을 visitor에 넘긴다. */
+    private interface Visitor {
+        void box(String type, int payload, int end);
+    }
+
+    private static void children(ByteBuffer buf, int start, int end, Visitor v) {
+        int pos = start;
+        while (pos + 8 <= end) {
+            long size = buf.getInt(pos) & 0xFFFFFFFFL;
+            String type = fourcc(buf, pos + 4);
+            int header = 8;
+            if (size == 1) {
+                size = buf.getLong(pos + 8);
+                header = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < header || pos + size > end) return;
+            v.box(type, pos + header, (int) (pos + size));
+            pos += (int) size;
+        }
+    }
+
+    private static boolean isContainer(String type) {
+        return "trak".equals(type) || "mdia".equals(type) || "minf".equals(type) || "stbl".equals(type);
+    }
+
+    // ---------- 메타데이터 ----------
+
+    private static void readMeta(final ByteBuffer moov, int header, final Result r) {
+        children(moov, header, moov.limit(), (type, payload, end) -> {
+            if ("mvhd".equals(type)) {
+                int version = moov.get(payload) & 0xFF;
+                long timescale, duration;
+                if (version == 1) {
+                    timescale = moov.getInt(payload + 20) & 0xFFFFFFFFL;
+                    duration = moov.getLong(payload + 24);
+                } else {
+                    timescale = moov.getInt(payload + 12) & 0xFFFFFFFFL;
+                    duration = moov.getInt(payload + 16) & 0xFFFFFFFFL;
+                }
+                if (timescale > 0 && duration >= 0) r.durationMs = Long.valueOf(duration * 1000 / timescale);
+            } else if ("trak".equals(type) && r.videoCodec == null) {
+                readTrack(moov, payload, end, r);
+            }
+        });
+    }
+
+    /** 영상 트랙(hdlr=vide)이면 해상도와 코덱을 채운다. */
+    private static void readTrack(final ByteBuffer moov, int start, int end, final Result r) {
+        final int[] tkhd = { -1 };
+        final String[] handler = { null };
+        final String[] codec = { null };
+
+        Visitor v = new Visitor() {
+            @Override
+            public void box(String type, int payload, int boxEnd) {
+                if ("tkhd".equals(type)) tkhd[0] = payload;
+                else if ("hdlr".equals(type)) handler[0] = fourcc(moov, payload + 8);
+                else if ("stsd".equals(type) && boxEnd - payload >= 16) codec[0] = fourcc(moov, payload + 12);
+                else if (isContainer(type)) children(moov, payload, boxEnd, this);
+            }
+        };
+        children(moov, start, end, v);
+
+        if (!"vide".equals(handler[0]) || tkhd[0] < 0) return;
+
+        int p = tkhd[0];
+        int base = (moov.get(p) & 0xFF) == 1 ? p + 4 + 32 : p + 4 + 20;
+        int matrix = base + 16;
+        int a = moov.getInt(matrix);
+        int b = moov.getInt(matrix + 4);
+        int w = moov.getInt(matrix + 36) >>> 16;
+        int h = moov.getInt(matrix + 40) >>> 16;
+
+        // 90/270도 회전 행렬이면 화면에 보이는 가로/세로로 바꿔 저장
+        boolean rotated = a == 0 && b != 0;
+        r.width = Integer.valueOf(rotated ? h : w);
+        r.height = Integer.valueOf(rotated ? w : h);
+        r.videoCodec = codec[0] != null ? codec[0].trim() : null;
+    }
+
+    // ---------- 오프셋 보정 ----------
+
+    /** stco/co64 항목 중 [from, to) 를 가리키는 것에 delta를 더한다. stco가 32비트를 넘으면 false. */
+    private static boolean shiftChunkOffsets(final ByteBuffer moov, int header,
+                                             final long from, final long to, final long delta) {
+        final boolean[] ok = { true };
+        Visitor v = new Visitor() {
+            @Override
+            public void box(String type, int payload, int end) {
+                if ("stco".equals(type) || "co64".equals(type)) {
+                    boolean wide = "co64".equals(type);
+                    long count = moov.getInt(payload + 4) & 0xFFFFFFFFL;
+                    int entry = wide ? 8 : 4;
+                    if (payload + 8 + count * entry > end) {
+                        ok[0] = false;
+                        return;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        int at = payload + 8 + i * entry;
+                        long o = wide ? moov.getLong(at) : (moov.getInt(at) & 0xFFFFFFFFL);
+                        if (o < from || o >= to) continue;
+                        o += delta;
+                        if (wide) {
+                            moov.putLong(at, o);
+                        } else if (o > 0xFFFFFFFFL) {
+                            ok[0] = false;
+                            return;
+                        } else {
+                            moov.putInt(at, (int) o);
+                        }
+                    }
+                } else if ("moov".equals(type) || isContainer(type)) {
+                    children(moov, payload, end, this);
+                }
+            }
+        };
+        children(moov, header, moov.limit(), v);
+        return ok[0];
+    }
+
+    // ---------- I/O ----------
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            pos += n;
+        }
+    }
+
+    private static void copyRange(FileChannel in, long pos, long len, FileChannel out, MessageDigest md) throws IOException {
+        if (md == null) {
+            // 해시가 필요 없으면 커널 복사
+            while (len > 0) {
+                long n = in.transferTo(pos, len, out);
+                if (n <= 0) throw new IOException("transferTo stalled");
+                pos += n;
+                len -= n;
+            }
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        while (len > 0) {
+            buf.clear();
+            if (len < buf.capacity()) buf.limit((int) len);
+            int n = in.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            buf.flip();
+            write(out, buf, md);
+            pos += n;
+            len -= n;
+        }
+    }
+
+    private static void write(FileChannel out, ByteBuffer buf, MessageDigest md) throws IOException {
+        if (md != null) {
+            md.update(buf.duplicate());
+        }
+        while (buf.hasRemaining()) out.write(buf);
+    }
+
+    private static String fourcc(ByteBuffer b) {
+        char[] c = new char[4];
+        for (int i = 0; i < 4; i++) c[i] = (char) (b.get() & 0xFF);
+        return new String(c);
+    }
+
+    private static String fourcc(ByteBuffer b, int at) {
+        char[] c = new char[4];
+        for (int i = 0; i < 4; i++) c[i] = (char) (b.get(at + i) & 0xFF);
+        return new String(c);
+    }
+}
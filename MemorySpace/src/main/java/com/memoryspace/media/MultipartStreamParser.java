@@ -0,0 +1,184 @@
+package com.memoryspace.media;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * multipart/form-data 증분 파서. 들어온 만큼 feed()로 넣으면 파트 단위 콜백을 부른다.
+ * 본문 전체를 메모리나 임시 파일에 모으지 않는다 (버퍼는 boundary 길이 + 읽기 버퍼 정도).
+ */
+public class MultipartStreamParser {
+
+    /** 파트 이벤트 수신자. 예외를 던지면 파싱이 중단된다. */
+    public interface Handler {
+        void partStart(String name, String fileName, String contentType) throws IOException;
+        void partData(byte[] buf, int off, int len) throws IOException;
+        void partEnd() throws IOException;
+    }
+
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final byte[] CRLFCRLF = { '\r', '\n', '\r', '\n' };
+
+    private enum State { PREAMBLE, AFTER_DELIMITER, HEADERS, BODY, DONE }
+
+    private final byte[] delimiter; // "\r\n--" + boundary
+    private final Handler handler;
+
+    private byte[] buf = new byte[16 * 1024];
+    private int len;
+    private State state = State.PREAMBLE;
+
+    public MultipartStreamParser(String boundary, Handler handler) {
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.handler = handler;
+        // 첫 boundary 앞에는 CRLF가 없으므로 붙여 두고 같은 규칙으로 찾는다
+        buf[0] = '\r';
+        buf[1] = '\n';
+        len = 2;
+    }
+
+    /** Content-Type 헤더에서 boundary. 없으면 null */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null) return null;
+        if (!contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) return null;
+        String v = param(contentType, "boundary");
+        return (v == null || v.isEmpty() || v.length() > 70) ? null : v;
+    }
+
+    public boolean isDone() {
+        return state == State.DONE;
+    }
+
+    public void feed(byte[] data, int off, int n) throws IOException {
+        if (state == State.DONE) return;
+        append(data, off, n);
+
+        int pos = 0;
+        while (true) {
+            if (state == State.PREAMBLE) {
+                int i = indexOf(buf, pos, len, delimiter);
+                if (i < 0) {
+                    pos = Math.max(pos, len - delimiter.length + 1);
+                    break;
+                }
+                pos = i + delimiter.length;
+                state = State.AFTER_DELIMITER;
+
+            } else if (state == State.AFTER_DELIMITER) {
+                if (len - pos < 2) break;
+                if (buf[pos] == '-' && buf[pos + 1] == '-') {
+                    state = State.DONE;
+                    pos = len;
+                    break;
+                }
+                if (buf[pos] != '\r' || buf[pos + 1] != '\n') throw new UploadRejectedException(400, "Malformed multipart boundary");
+                pos += 2;
+                state = State.HEADERS;
+
+            } else if (state == State.HEADERS) {
+                int i = indexOf(buf, pos, len, CRLFCRLF);
+                if (i < 0) {
+                    if (len - pos > MAX_HEADER_BYTES) throw new UploadRejectedException(400, "Multipart headers too large");
+                    break;
+                }
+                startPart(new String(buf, pos, i - pos, StandardCharsets.UTF_8));
+                pos = i + CRLFCRLF.length;
+                state = State.BODY;
+
+            } else if (state == State.BODY) {
+                int i = indexOf(buf, pos, len, delimiter);
+                if (i >= 0) {
+                    if (i > pos) handler.partData(buf, pos, i - pos);
+                    handler.partEnd();
+                    pos = i + delimiter.length;
+                    state = State.AFTER_DELIMITER;
+                } else {
+                    // 끝부분은 boundary 앞부분일 수 있으니 남겨 둔다
+                    int safe = len - (delimiter.length - 1);
+                    if (safe > pos) {
+                        handler.partData(buf, pos, safe - pos);
+                        pos = safe;
+                    }
+                    break;
+                }
+
+            } else {
+                pos = len;
+                break;
+            }
+        }
+
+        // 처리한 앞부분을 버린다
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, len - pos);
+            len -= pos;
+        }
+    }
+
+    private void startPart(String headerBlock) throws IOException {
+        String name = null, fileName = null, contentType = null;
+        String[] lines = headerBlock.split("\r\n");
+        for (String line : lines) {
+            int c = line.indexOf(':');
+            if (c <= 0) continue;
+            String h = line.substring(0, c).trim().toLowerCase(Locale.ROOT);
+            String v = line.substring(c + 1).trim();
+            if ("content-disposition".equals(h)) {
+                name = param(v, "name");
+                fileName = param(v, "filename");
+            } else if ("content-type".equals(h)) {
+                contentType = v;
+            }
+        }
+        if (name == null) throw new UploadRejectedException(400, "Multipart part without name");
+        handler.partStart(name, fileName, contentType);
+    }
+
+    /** 헤더 값에서 key=value / key="value" 파라미터 */
+    private static String param(String header, String key) {
+        String lower = header.toLowerCase(Locale.ROOT);
+        int from = 0;
+        while (true) {
+            int i = lower.indexOf(key + "=", from);
+            if (i < 0) return null;
+            // "filename=" 안의 "name=" 같은 부분 일치는 건너뛴다
+            char before = i == 0 ? ';' : lower.charAt(i - 1);
+            if (before != ';' && before != ' ' && before != '\t') {
+                from = i + 1;
+                continue;
+            }
+            int s = i + key.length() + 1;
+            if (s < header.length() && header.charAt(s) == '"') {
+                int e = header.indexOf('"', s + 1);
+                return e < 0 ? header.substring(s + 1) : header.substring(s + 1, e);
+            }
+            int e = header.indexOf(';', s);
+            return (e < 0 ? header.substring(s) : header.substring(s, e)).trim();
+        }
+    }
+
+    private void append(byte[] data, int off, int n) {
+        if (len + n > buf.length) {
+            byte[] nb = new byte[Math.max(buf.length * 2, len + n)];
+            System.arraycopy(buf, 0, nb, 0, len);
+            buf = nb;
+        }
+        System.arraycopy(data, off, buf, len, n);
+        len += n;
+    }
+
+    private static int indexOf(byte[] a, int from, int to, byte[] pat) {
+        byte first = pat[0];
+        int last = to - pat.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (a[i] != first) continue;
+            for (int j = 1; j < pat.length; j++) {
+                if (a[i + j] != pat[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,13 @@
+package com.memoryspace.media;
+
+import java.util.List;
+
+/** 업로드 요청 안에서 아직 INSERT 전인 미디어 한 건. insertMediaRows() 후 id가 채워진다. */
+public class NewMedia {
+    public StoredUpload stored;
+    public String description;   // nullable
+    public String locationName;  // nullable
+    public List<String> tagNames;
+
+    public long id;
+}
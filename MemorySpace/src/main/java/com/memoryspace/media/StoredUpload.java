@@ -1,5 +1,7 @@
 package com.memoryspace.media;
 
+import java.nio.file.Path;
+
 public class StoredUpload {
     public String savedName;
     public String publicUrl;
@@ -7,4 +9,13 @@ public class StoredUpload {
     public String mimeType;
     public long sizeBytes;
     public String type; // image/video
+
+    public String sha256;   // 내용 주소 모드일 때 내용 해시 (아니면 null)
+    public Path stagedPath; // promote 전 staging 위치 (promote 후 null)
+
+    // 영상(MP4 계열) 메타데이터, 없으면 null
+    public Long durationMs;
+    public Integer width;
+    public Integer height;
+    public String videoCodec;
 }
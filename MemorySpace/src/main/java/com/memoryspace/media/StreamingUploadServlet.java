@@ -0,0 +1,354 @@
+package com.memoryspace.media;
+
+import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.db.UnitOfWork;
+import com.memoryspace.storage.ContentHash;
+import com.memoryspace.storage.StorageQuotaExceededException;
+import com.memoryspace.storage.StorageUsageDao;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 비동기(non-blocking) 멀티파트 업로드. POST /api/media/upload-stream?planetId=
+ *
+ * /api/media/add 와 같은 폼(files, description0/location0/tags0 ...)을 받지만,
+ * 컨테이너가 본문을 임시 파일로 모으지 않고 ReadListener로 들어오는 만큼 파싱한다.
+ * - 파일 파트는 곧바로 staging 파일에 쓰고(해시 동시 계산), 커밋 때 BlobStore로 rename 된다 -> 디스크 쓰기 1회
+ * - 일반 필드는 도착하는 대로 메모리에 모은다 (필드당 64KB 제한)
+ * - 느린 클라이언트가 보내는 동안 요청 스레드를 붙잡지 않는다
+ * 등록은 MediaService.persistUploads()로 기존 업로드와 같은 트랜잭션 경로를 탄다.
+ */
+@WebServlet(urlPatterns = "/api/media/upload-stream", asyncSupported = true)
+public class StreamingUploadServlet extends HttpServlet {
+
+    // MediaServlet @MultipartConfig와 같은 한도
+    private static final long MAX_FILE_BYTES = 50L * 1024 * 1024;
+    private static final long MAX_REQUEST_BYTES = 200L * 1024 * 1024;
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+    private static final int MAX_FILES = 50;
+    private static final long ASYNC_TIMEOUT_MS = 10L * 60 * 1000;
+
+    private final MediaDao dao = new MediaDao();
+    private final MediaService service = new MediaService();
+    private final StorageUsageDao storage = new StorageUsageDao();
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Long userId = MediaRequest.getSessionUserId(req);
+        if (userId == null) {
+            MediaJson.sendJson(resp, 401, MediaJson.fail("Unauthorized"));
+            return;
+        }
+
+        long planetId = MediaRequest.parseLong(req.getParameter("planetId"), -1);
+        if (planetId <= 0) {
+            MediaJson.sendJson(resp, 400, MediaJson.fail("planetId is required"));
+            return;
+        }
+
+        String boundary = MultipartStreamParser.boundaryOf(req.getContentType());
+        if (boundary == null) {
+            MediaJson.sendJson(resp, 400, MediaJson.fail("multipart/form-data required"));
+            return;
+        }
+        if (req.getContentLengthLong() > MAX_REQUEST_BYTES) {
+            MediaJson.sendJson(resp, 413, MediaJson.fail("Request too large"));
+            return;
+        }
+
+        // 본문을 읽기 전에 권한부터 확인 (거절할 요청의 바이트를 받지 않는다)
+        Connection con = null;
+        try {
+            con = DBConnectionUtil.getConnection();
+            if (!dao.isPlanetOwner(con, planetId, userId.longValue())) {
+                MediaJson.sendJson(resp, 403, MediaJson.fail("Forbidden"));
+                return;
+            }
+            if (!storage.fits(con, userId.longValue(), req.getContentLengthLong())) {
+                MediaService.sendQuotaExceeded(resp);
+                return;
+            }
+        } catch (Exception e) {
+            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+            return;
+        } finally {
+            MediaJson.closeQuietly(con);
+        }
+
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(ASYNC_TIMEOUT_MS);
+
+        Ingest ingest = new Ingest(ctx, req.getInputStream(), planetId, MediaRequest.getSessionLoginId(req), boundary);
+        ctx.addListener(ingest);
+        req.getInputStream().setReadListener(ingest);
+    }
+
+    /** 요청 하나의 수신 상태. 컨테이너가 콜백을 직렬로 호출한다 (onTimeout/onError만 다른 스레드일 수 있음). */
+    private final class Ingest implements ReadListener, AsyncListener, MultipartStreamParser.Handler {
+
+        private final AsyncContext ctx;
+        private final ServletInputStream in;
+        private final long planetId;
+        private final String userKey; // read-your-writes (세션 loginId)
+        private final MultipartStreamParser parser;
+        private final byte[] buf = new byte[64 * 1024];
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private final Map<String, String> fields = new HashMap<String, String>();
+        private final List<StoredUpload> files = new ArrayList<StoredUpload>();
+        private long received;
+
+        // 현재 파트
+        private String partName;
+        private ByteArrayOutputStream field;
+        private StoredUpload file;
+        private FileChannel channel;
+        private MessageDigest digest;
+
+        Ingest(AsyncContext ctx, ServletInputStream in, long planetId, String userKey, String boundary) {
+            this.ctx = ctx;
+            this.in = in;
+            this.planetId = planetId;
+            this.userKey = userKey;
+            this.parser = new MultipartStreamParser(boundary, this);
+        }
+
+        // ---------- ReadListener ----------
+
+        @Override
+        public void onDataAvailable() {
+            try {
+                while (!finished.get() && in.isReady()) {
+                    int n = in.read(buf);
+                    if (n < 0) break;
+                    received += n;
+                    if (received > MAX_REQUEST_BYTES) {
+                        fail(413, "Request too large");
+                        return;
+                    }
+                    parser.feed(buf, 0, n);
+                }
+            } catch (UploadRejectedException e) {
+                // 파서/한도 위반은 고정 문구라 그대로 돌려준다
+                fail(e.getStatus(), e.getMessage());
+            } catch (IOException e) {
+                // 디스크 쓰기 실패 등. 내부 메시지는 로그에만
+                System.err.println("[upload-stream] " + e);
+                fail(500, "Server Error");
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            if (finished.get()) return;
+            if (!parser.isDone() || channel != null) {
+                fail(400, "Malformed upload");
+                return;
+            }
+            if (files.isEmpty()) {
+                fail(400, "files are required");
+                return;
+            }
+
+            List<NewMedia> rows = new ArrayList<NewMedia>();
+            for (int i = 0; i < files.size(); i++) {
+                NewMedia m = new NewMedia();
+                m.stored = files.get(i);
+                m.description = fieldIndexed("description", i);
+                m.locationName = fieldIndexed("location", i);
+                m.tagNames = MediaRequest.parseTags(fieldIndexed("tags", i));
+                rows.add(m);
+            }
+
+            if (!finished.compareAndSet(false, true)) return;
+
+            // 콜백 스레드에는 필터의 UnitOfWork가 없다. 같은 사용자 키로 묶어야
+            // 커밋 후 read-your-writes 창이 열려 바로 이어지는 목록 조회가 replica로 가지 않는다.
+            // (setReadListener 안에서 바로 불리면 아직 필터의 것이 바인딩되어 있으므로 그것을 쓴다)
+            UnitOfWork uow = UnitOfWork.current() == null ? DBConnectionUtil.beginUnitOfWork(userKey) : null;
+            boolean ok = false;
+            int status;
+            String json;
+            try {
+                // 실패하면 persistUploads가 staging 파일을 정리한다
+                List<MediaDto> created = service.persistUploads(planetId, rows);
+                ok = true;
+
+                List<String> createdJson = new ArrayList<String>();
+                for (int i = 0; i < created.size(); i++) {
+                    createdJson.add(MediaJson.mediaToJson(created.get(i)));
+                }
+                status = 201;
+                json = "{\"success\":true,\"media\":[" + MediaJson.join(createdJson) + "]}";
+            } catch (StorageQuotaExceededException e) {
+                status = 413;
+                json = MediaJson.fail("Storage quota exceeded");
+            } catch (Exception e) {
+                status = 500;
+                json = MediaJson.fail("Server Error");
+            } finally {
+                if (uow != null) uow.end(ok); // 응답 전에 커넥션 반납 + 쓰기 기록
+            }
+            respond(status, json);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(400, "Upload aborted");
+        }
+
+        // ---------- AsyncListener ----------
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            fail(408, "Upload timed out");
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            fail(400, "Upload aborted");
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {}
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {}
+
+        // ---------- MultipartStreamParser.Handler ----------
+
+        @Override
+        public void partStart(String name, String fileName, String contentType) throws IOException {
+            partName = name;
+            boolean isFilePart = fileName != null && ("files".equals(name) || "file".equals(name));
+            if (!isFilePart) {
+                field = new ByteArrayOutputStream();
+                return;
+            }
+
+            if (files.size() >= MAX_FILES) throw new UploadRejectedException(413, "Too many files");
+
+            String original = MediaRequest.safeFileName(fileName);
+            String ext = MediaRequest.extensionOf(original);
+            String savedName = UUID.randomUUID().toString().replace("-", "") + (ext.isEmpty() ? "" : "." + ext);
+
+            Files.createDirectories(Paths.get(UploadConfig.STAGING_DIR));
+            Path staged = Paths.get(UploadConfig.STAGING_DIR, savedName);
+
+            file = new StoredUpload();
+            file.savedName = savedName;
+            file.originalName = original;
+            file.mimeType = contentType; // partEnd에서 내용으로 다시 정한다
+            file.stagedPath = staged;
+            files.add(file); // 실패 정리 대상에 먼저 넣는다
+
+            channel = FileChannel.open(staged, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            digest = UploadConfig.CONTENT_ADDRESSED ? ContentHash.newDigest() : null;
+        }
+
+        @Override
+        public void partData(byte[] b, int off, int len) throws IOException {
+            if (field != null) {
+                if (field.size() + len > MAX_FIELD_BYTES) throw new UploadRejectedException(413, "Field too large");
+                field.write(b, off, len);
+                return;
+            }
+            if (channel == null) return;
+
+            file.sizeBytes += len;
+            if (file.sizeBytes > MAX_FILE_BYTES) throw new UploadRejectedException(413, "File too large");
+            if (digest != null) digest.update(b, off, len);
+            ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+            while (bb.hasRemaining()) channel.write(bb);
+        }
+
+        @Override
+        public void partEnd() throws IOException {
+            if (field != null) {
+                fields.put(partName, new String(field.toByteArray(), StandardCharsets.UTF_8));
+                field = null;
+                return;
+            }
+            if (channel == null) return;
+
+            channel.close();
+            channel = null;
+            if (file.sizeBytes == 0) {
+                // 빈 파일 파트는 /add 와 같이 무시
+                Files.deleteIfExists(file.stagedPath);
+                files.remove(files.size() - 1);
+            } else {
+                // ✅ 선언된 Content-Type 대신 실제 내용으로 판별 (실패하면 fail()이 staging을 지운다)
+                String mime = ContentSniffer.sniff(file.stagedPath);
+                if (mime == null) throw new UploadRejectedException(400, "Unsupported file type");
+                file.mimeType = mime;
+                file.type = ContentSniffer.isVideo(mime) ? "video" : "image";
+                if (digest != null) {
+                    file.sha256 = ContentHash.hex(digest.digest());
+                    file.savedName = ContentHash.blobName(file.sha256, MediaRequest.extensionOf(file.originalName));
+                }
+            }
+            file.publicUrl = UploadConfig.PUBLIC_PREFIX + file.savedName;
+            if ("video".equals(file.type) && file.sizeBytes > 0) MediaUpload.applyFastStart(file);
+            file = null;
+            digest = null;
+        }
+
+        // ---------- helpers ----------
+
+        private String fieldIndexed(String base, int idx) {
+            String v = fields.get(base + idx);
+            if (v != null) return v;
+            return fields.get(base);
+        }
+
+        private void fail(int status, String message) {
+            if (!finished.compareAndSet(false, true)) return;
+            if (channel != null) {
+                try { channel.close(); } catch (IOException ignored) {}
+                channel = null;
+            }
+            for (StoredUpload f : files) {
+                try { Files.deleteIfExists(f.stagedPath); } catch (IOException ignored) {}
+            }
+            respond(status, MediaJson.fail(message));
+        }
+
+        private void respond(int status, String json) {
+            try {
+                HttpServletResponse resp = (HttpServletResponse) ctx.getResponse();
+                if (!resp.isCommitted()) {
+                    if (status >= 400) resp.setHeader("Connection", "close"); // 남은 본문은 읽지 않는다
+                    MediaJson.sendJson(resp, status, json);
+                }
+            } catch (Exception ignored) {
+            } finally {
+                try { ctx.complete(); } catch (IllegalStateException ignored) {}
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.memoryspace.media;
+
+import com.memoryspace.db.DBConnectionUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 프로세스 전역 태그 사전 (name -> tags.id, tags.id -> 저장된 이름).
+ *
+ * - 첫 사용 시 tags 테이블 전체를 한 번 읽어온다. 이후 조회는 ConcurrentHashMap이라 락이 없다.
+ * - 사전에 없는 이름은 INSERT ... ON DUPLICATE KEY UPDATE 한 번으로 만들거나 기존 id를 받는다.
+ *   동시에 같은 새 태그가 들어와도 중복 키 예외가 나지 않는다.
+ * - 새 태그는 트랜잭션을 시작하기 전에 prepare()로 호출부 커넥션(autoCommit)에서 만든다.
+ *   업로드가 롤백되어도 태그 행은 남으므로, 사전에 넣어 둔 id가 사라지는 일이 없고
+ *   트랜잭션 안의 idFor()는 사전만 보므로 커넥션을 하나 더 빌리지 않는다.
+ * - prepare() 없이 idFor()가 사전에 없는 이름을 만나면 풀에서 커넥션을 따로 빌려 upsert 한다 (요청당 2개).
+ *
+ * tags 행은 삭제하지 않는다는 전제. (삭제 경로가 생기면 clear()를 불러야 한다)
+ */
+public final class TagDictionary {
+
+    private static final ConcurrentHashMap<String, Long> IDS = new ConcurrentHashMap<String, Long>();
+    // tags.name은 대소문자를 구분하지 않는 collation이라 "Beach"도 "beach" 행의 id를 받는다. 응답에는 저장된 이름을 쓴다
+    private static final ConcurrentHashMap<Long, String> NAMES = new ConcurrentHashMap<Long, String>();
+    private static volatile boolean loaded;
+
+    private TagDictionary() {}
+
+    /**
+     * names에 쓰인 태그를 사전에 채운다. 없는 태그는 con에서 만든다.
+     * con은 autoCommit 상태여야 한다 (트랜잭션 시작 전에 부른다).
+     */
+    public static void prepare(Connection con, Collection<String> names) throws SQLException {
+        if (names == null || names.isEmpty()) return;
+        ensureLoaded(con);
+
+        for (String n : names) {
+            if (n == null) continue;
+            n = n.trim();
+            if (n.isEmpty() || IDS.containsKey(n)) continue;
+            IDS.putIfAbsent(n, Long.valueOf(upsert(con, n)));
+        }
+    }
+
+    /** name(trim 된 값)의 tags.id. 없으면 만든다 (prepare()를 거쳤으면 DB 왕복 없음). */
+    public static long idFor(String name) throws SQLException {
+        ensureLoaded(null);
+
+        Long id = IDS.get(name);
+        if (id != null) return id.longValue();
+
+        long created;
+        Connection con = DBConnectionUtil.getDirectConnection();
+        try {
+            created = upsert(con, name);
+        } finally {
+            MediaJson.closeQuietly(con);
+        }
+        Long prev = IDS.putIfAbsent(name, Long.valueOf(created));
+        return (prev != null) ? prev.longValue() : created;
+    }
+
+    /** tags 행에 저장된 이름. 사전에 없으면 null */
+    public static String nameOf(long id) {
+        return NAMES.get(Long.valueOf(id));
+    }
+
+    public static void clear() {
+        IDS.clear();
+        NAMES.clear();
+        loaded = false;
+    }
+
+    /** con이 null이면 커넥션을 따로 빌린다 */
+    private static void ensureLoaded(Connection given) throws SQLException {
+        if (loaded) return;
+        synchronized (TagDictionary.class) {
+            if (loaded) return;
+
+            Connection con = given;
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            try {
+                if (con == null) con = DBConnectionUtil.getDirectConnection();
+                ps = con.prepareStatement("SELECT id, name FROM tags");
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    Long id = Long.valueOf(rs.getLong(1));
+                    IDS.putIfAbsent(rs.getString(2), id);
+                    NAMES.putIfAbsent(id, rs.getString(2));
+                }
+                loaded = true;
+            } finally {
+                MediaJson.closeQuietly(rs);
+                MediaJson.closeQuietly(ps);
+                if (given == null) MediaJson.closeQuietly(con);
+            }
+        }
+    }
+
+    /** 만들거나 기존 id를 받고, 그 행에 저장된 이름을 NAMES에 넣는다 */
+    private static long upsert(Connection con, String name) throws SQLException {
+        PreparedStatement ps = null;
+        ResultSet keys = null;
+        long id;
+        try {
+            // 이미 있으면 LAST_INSERT_ID(id)로 기존 id를 generated key로 돌려받는다
+            ps = con.prepareStatement(
+                    "INSERT INTO tags (name) VALUES (?) ON DUPLICATE KEY UPDATE id=LAST_INSERT_ID(id)",
+                    Statement.RETURN_GENERATED_KEYS
+            );
+            ps.setString(1, name);
+            ps.executeUpdate();
+            keys = ps.getGeneratedKeys();
+            if (!keys.next()) throw new SQLException("Failed to get tagId");
+            id = keys.getLong(1);
+        } finally {
+            MediaJson.closeQuietly(keys);
+            MediaJson.closeQuietly(ps);
+        }
+
+        // 기존 행이면 대소문자가 다를 수 있으므로 저장된 이름을 읽는다 (사전에 없을 때만)
+        try (PreparedStatement q = con.prepareStatement("SELECT name FROM tags WHERE id=?")) {
+            q.setLong(1, id);
+            try (ResultSet rs = q.executeQuery()) {
+                NAMES.putIfAbsent(Long.valueOf(id), rs.next() ? rs.getString(1) : name);
+            }
+        }
+        return id;
+    }
+}
@@ -1,12 +1,26 @@
 package com.memoryspace.media;
 
+import com.memoryspace.storage.BlobStores;
+
 import java.io.File;
 
 public final class UploadConfig {
     private UploadConfig() {}
 
-    public static final String UPLOAD_DIR =
-            System.getProperty("user.home") + File.separator + "memoryspace_uploads";
+    // 실제 파일 배치(샤딩)는 BlobStore가 담당한다. 여기서는 루트와 staging 위치만 쓴다.
+    public static final String UPLOAD_DIR = BlobStores.ROOT;
 
     public static final String PUBLIC_PREFIX = "/uploads/";
+
+    // 내용 주소 저장: 파일명을 sha256+확장자로 해서 같은 내용은 한 번만 저장 (media_blobs 참조 카운트)
+    public static final boolean CONTENT_ADDRESSED =
+            !"false".equalsIgnoreCase(System.getProperty("memoryspace.upload.contentAddressed", "true"));
+
+    // 업로드 임시 저장 위치. UPLOAD_DIR과 같은 파일시스템이어야 promote(원자적 move)가 가능하다.
+    public static final String STAGING_DIR = UPLOAD_DIR + File.separator + ".staging";
+
+    // 한 요청의 여러 파일을 동시에 디스크에 쓰는 스레드 수 (프로세스 전체 공유)
+    public static final int STAGING_THREADS =
+            Integer.getInteger("memoryspace.upload.stagingThreads",
+                    Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
 }
@@ -0,0 +1,22 @@
+package com.memoryspace.media;
+
+import java.io.IOException;
+
+/**
+ * 스트리밍 업로드 본문이 형식/한도를 어겼을 때. 메시지는 클라이언트에 그대로 보내도 되는 고정 문구만 쓴다.
+ * 디스크 오류 등 다른 IOException은 500으로 처리한다.
+ */
+public class UploadRejectedException extends IOException {
+
+    private final int status;
+
+    public UploadRejectedException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /** 400(형식 오류) 또는 413(한도 초과) */
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,165 @@
+package com.memoryspace.media;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * /uploads 본문 전송 방식 비교 도구. loopback 소켓으로 같은 파일을 여러 번 보내고 처리량과 CPU를 잰다.
+ *
+ *   java -cp WEB-INF/classes com.memoryspace.media.UploadServeBenchmark [--file PATH] [--size-mb 256] [--rounds 5]
+ *
+ * - stream     : 예전 방식. InputStream -> 8KB byte[] -> 소켓 OutputStream
+ * - transferTo : BlobSender fallback. FileChannel.transferTo -> 스트림을 감싼 채널
+ * - sendfile   : FileChannel.transferTo -> SocketChannel (Tomcat NIO 커넥터의 sendfile과 같은 커널 경로)
+ *
+ * 보내는 스레드의 CPU 시간과 힙 할당량을 GB당으로 보여준다. 받는 쪽 비용은 세 방식 모두 같다.
+ * --file이 없으면 임시 파일을 만들고 끝나면 지운다. 페이지 캐시에 올라간 상태를 재므로 디스크 속도는 빠진다.
+ */
+public final class UploadServeBenchmark {
+
+    private static final String[] MODES = { "stream", "transferTo", "sendfile" };
+    private static final double GB = 1024.0 * 1024 * 1024;
+
+    private UploadServeBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        Path file = null;
+        long sizeMb = 256;
+        int rounds = 5;
+        for (int i = 0; i < args.length; i++) {
+            if ("--file".equals(args[i]) && i + 1 < args.length) file = Paths.get(args[++i]);
+            else if ("--size-mb".equals(args[i]) && i + 1 < args.length) sizeMb = Long.parseLong(args[++i]);
+            else if ("--rounds".equals(args[i]) && i + 1 < args.length) rounds = Integer.parseInt(args[++i]);
+        }
+
+        boolean temp = file == null;
+        if (temp) file = createTempFile(sizeMb * 1024 * 1024);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(true);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("127.0.0.1", 0));
+            long size = Files.size(file);
+            System.out.println("file=" + file + " size=" + size + " rounds=" + rounds);
+            System.out.println(String.format("%-11s %10s %14s %16s", "mode", "MB/s", "cpu ms/GB", "alloc KB/GB"));
+
+            for (String mode : MODES) {
+                run(server, file, mode, 1, threads); // 워밍업 (JIT, 페이지 캐시)
+                Stats s = run(server, file, mode, rounds, threads);
+                double gbSent = (double) s.bytes / GB;
+                System.out.println(String.format("%-11s %10.1f %14.1f %16.1f",
+                        mode,
+                        s.bytes / (1024.0 * 1024) / (s.wallNanos / 1e9),
+                        s.cpuNanos < 0 ? Double.NaN : s.cpuNanos / 1e6 / gbSent,
+                        s.allocBytes < 0 ? Double.NaN : s.allocBytes / 1024.0 / gbSent));
+            }
+        } finally {
+            if (temp) Files.deleteIfExists(file);
+        }
+    }
+
+    private static final class Stats {
+        long bytes, wallNanos, cpuNanos, allocBytes;
+    }
+
+    private static Stats run(ServerSocketChannel server, Path file, String mode, int rounds, ThreadMXBean threads)
+            throws Exception {
+        Stats s = new Stats();
+        for (int i = 0; i < rounds; i++) {
+            AtomicLong received = new AtomicLong();
+            Thread drain = drainOne(server, received);
+
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                 FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long cpu0 = cpuTime(threads);
+                long alloc0 = allocated(threads);
+                long t0 = System.nanoTime();
+
+                long len = ch.size();
+                if ("stream".equals(mode)) {
+                    try (InputStream in = Files.newInputStream(file)) {
+                        OutputStream out = Channels.newOutputStream(client);
+                        byte[] buf = new byte[8192];
+                        int r;
+                        while ((r = in.read(buf)) != -1) out.write(buf, 0, r);
+                        out.flush();
+                    }
+                } else if ("transferTo".equals(mode)) {
+                    // 서블릿 안에서는 소켓 대신 ServletOutputStream만 보이므로 스트림을 감싼 채널로 보낸다
+                    BlobSender.transfer(ch, 0, len, Channels.newChannel(Channels.newOutputStream(client)));
+                } else {
+                    BlobSender.transfer(ch, 0, len, client);
+                }
+                client.shutdownOutput();
+
+                s.wallNanos += System.nanoTime() - t0;
+                long cpu = cpuTime(threads);
+                long alloc = allocated(threads);
+                s.cpuNanos = (cpu0 < 0 || s.cpuNanos < 0) ? -1 : s.cpuNanos + (cpu - cpu0);
+                s.allocBytes = (alloc0 < 0 || s.allocBytes < 0) ? -1 : s.allocBytes + (alloc - alloc0);
+                s.bytes += len;
+            }
+            drain.join();
+            if (received.get() != Files.size(file)) throw new IllegalStateException(mode + ": short transfer");
+        }
+        return s;
+    }
+
+    /** 연결 하나를 받아 끝까지 읽어 버린다. */
+    private static Thread drainOne(final ServerSocketChannel server, final AtomicLong received) {
+        Thread t = new Thread(() -> {
+            try (SocketChannel peer = server.accept()) {
+                ByteBuffer buf = ByteBuffer.allocateDirect(256 * 1024);
+                int n;
+                while ((n = peer.read(buf)) != -1) {
+                    received.addAndGet(n);
+                    buf.clear();
+                }
+            } catch (Exception e) {
+                System.err.println("[bench] drain failed: " + e.getMessage());
+            }
+        }, "bench-drain");
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private static long cpuTime(ThreadMXBean threads) {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    /** 현재 스레드 누적 힙 할당량 (HotSpot 전용, 없으면 -1) */
+    private static long allocated(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static Path createTempFile(long size) throws Exception {
+        Path p = Files.createTempFile("serve-bench", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(p)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+        return p;
+    }
+}
@@ -0,0 +1,34 @@
+package com.memoryspace.media;
+
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * 이어 올리기(chunked) 업로드 세션 하나. UploadSessions가 메모리에 보관한다.
+ * offset까지의 바이트는 stagedPath에 기록되어 있고, digest는 그 바이트들의 누적 SHA-256이다.
+ */
+public class UploadSession {
+    public String id;
+    public long userId;
+    public long planetId;
+
+    public String originalName;
+    public String mimeType;
+    public String type;      // image/video
+    public long size;        // 선언된 전체 크기
+    public String expectedSha256; // 클라이언트가 알려 준 전체 해시 (nullable)
+
+    public String description;
+    public String locationName;
+    public List<String> tagNames;
+
+    public Path stagedPath;
+    public long offset;      // 지금까지 받은 바이트 수 (다음 청크 시작 위치)
+    public MessageDigest digest;
+    public boolean receiving; // 청크 본문을 받는 중 (offset 뒤쪽은 그 요청만 쓴다)
+
+    public long createdAt;
+    public volatile long lastActivityAt;
+    public boolean finished; // finalize/abort 후 true
+}
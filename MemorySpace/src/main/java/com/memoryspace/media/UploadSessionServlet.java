@@ -0,0 +1,403 @@
+package com.memoryspace.media;
+
+import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.storage.ContentHash;
+import com.memoryspace.storage.StorageQuotaExceededException;
+import com.memoryspace.storage.StorageUsageDao;
+
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 이어 올리기(chunked) 업로드.
+ *
+ *   POST   /api/media/upload-session                      세션 생성 (planetId, fileName, mimeType, size, [sha256, description, location, tags])
+ *   PUT    /api/media/upload-session/{id}                 청크 전송 (Content-Range: bytes s-e/total, X-Chunk-SHA256: hex)
+ *   GET    /api/media/upload-session/{id}                 받은 위치(offset) 조회 - 끊긴 뒤 여기서부터 다시 보낸다
+ *   POST   /api/media/upload-session/{id}/finalize        완료 -> 일반 업로드와 같은 경로로 planet_media 등록
+ *   DELETE /api/media/upload-session/{id}                 취소
+ *
+ * 청크는 staging 파일에 바로 쓰고 메모리에는 버퍼 하나만 둔다. 세션당 디스크는 선언된 size까지만 쓴다.
+ */
+@WebServlet("/api/media/upload-session/*")
+public class UploadSessionServlet extends HttpServlet {
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final MediaDao dao = new MediaDao();
+    private final MediaService service = new MediaService();
+    private final StorageUsageDao storage = new StorageUsageDao();
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Long userId = MediaRequest.getSessionUserId(req);
+        if (userId == null) {
+            MediaJson.sendJson(resp, 401, MediaJson.fail("Unauthorized"));
+            return;
+        }
+
+        String[] path = pathParts(req);
+        if (path.length == 0) {
+            handleCreate(req, resp, userId.longValue());
+            return;
+        }
+        if (path.length == 2 && "finalize".equals(path[1])) {
+            handleFinalize(resp, UploadSessions.get(path[0], userId.longValue()));
+            return;
+        }
+        MediaJson.sendJson(resp, 404, MediaJson.fail("Not Found"));
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Long userId = MediaRequest.getSessionUserId(req);
+        if (userId == null) {
+            MediaJson.sendJson(resp, 401, MediaJson.fail("Unauthorized"));
+            return;
+        }
+        String[] path = pathParts(req);
+        if (path.length != 1) {
+            MediaJson.sendJson(resp, 404, MediaJson.fail("Not Found"));
+            return;
+        }
+        handleChunk(req, resp, UploadSessions.get(path[0], userId.longValue()));
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Long userId = MediaRequest.getSessionUserId(req);
+        if (userId == null) {
+            MediaJson.sendJson(resp, 401, MediaJson.fail("Unauthorized"));
+            return;
+        }
+        String[] path = pathParts(req);
+        UploadSession s = (path.length == 1) ? UploadSessions.get(path[0], userId.longValue()) : null;
+        if (s == null) {
+            MediaJson.sendJson(resp, 404, MediaJson.fail("Upload session not found"));
+            return;
+        }
+        MediaJson.sendJson(resp, 200, statusJson(s));
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Long userId = MediaRequest.getSessionUserId(req);
+        if (userId == null) {
+            MediaJson.sendJson(resp, 401, MediaJson.fail("Unauthorized"));
+            return;
+        }
+        String[] path = pathParts(req);
+        UploadSession s = (path.length == 1) ? UploadSessions.get(path[0], userId.longValue()) : null;
+        if (s == null) {
+            MediaJson.sendJson(resp, 404, MediaJson.fail("Upload session not found"));
+            return;
+        }
+        synchronized (s) {
+            s.finished = true;
+            UploadSessions.remove(s);
+        }
+        MediaJson.sendJson(resp, 200, "{\"success\":true,\"data\":{}}");
+    }
+
+    private void handleCreate(HttpServletRequest req, HttpServletResponse resp, long userId) throws IOException {
+        long planetId = MediaRequest.parseLong(req.getParameter("planetId"), -1);
+        long size = MediaRequest.parseLong(req.getParameter("size"), -1);
+        String mime = req.getParameter("mimeType");
+        String original = MediaRequest.safeFileName(req.getParameter("fileName"));
+
+        if (planetId <= 0 || size <= 0) {
+            MediaJson.sendJson(resp, 400, MediaJson.fail("planetId and size are required"));
+            return;
+        }
+        if (size > UploadSessions.MAX_FILE_BYTES) {
+            MediaJson.sendJson(resp, 413, MediaJson.fail("File too large"));
+            return;
+        }
+
+        String lower = mime == null ? "" : mime.toLowerCase(Locale.ROOT);
+        boolean isVideo = lower.startsWith("video/");
+        boolean isImage = lower.startsWith("image/");
+        if (!isImage && !isVideo) {
+            MediaJson.sendJson(resp, 400, MediaJson.fail("Unsupported file type"));
+            return;
+        }
+
+        String sha256 = req.getParameter("sha256");
+        if (sha256 != null) {
+            sha256 = sha256.trim().toLowerCase(Locale.ROOT);
+            if (!sha256.matches("[0-9a-f]{64}")) {
+                MediaJson.sendJson(resp, 400, MediaJson.fail("invalid sha256"));
+                return;
+            }
+        }
+
+        Connection con = null;
+        try {
+            con = DBConnectionUtil.getConnection();
+            if (!dao.isPlanetOwner(con, planetId, userId)) {
+                MediaJson.sendJson(resp, 403, MediaJson.fail("Forbidden"));
+                return;
+            }
+            if (!storage.fits(con, userId, size)) {
+                MediaService.sendQuotaExceeded(resp);
+                return;
+            }
+        } catch (Exception e) {
+            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+            return;
+        } finally {
+            MediaJson.closeQuietly(con);
+        }
+
+        UploadSession s = UploadSessions.create(userId);
+        if (s == null) {
+            MediaJson.sendJson(resp, 429, MediaJson.fail("Too many upload sessions"));
+            return;
+        }
+
+        s.planetId = planetId;
+        s.originalName = original;
+        s.mimeType = mime;
+        s.type = isVideo ? "video" : "image";
+        s.size = size;
+        s.expectedSha256 = sha256;
+        s.description = req.getParameter("description");
+        s.locationName = req.getParameter("location");
+        s.tagNames = MediaRequest.parseTags(req.getParameter("tags"));
+        s.digest = ContentHash.newDigest();
+
+        try {
+            Files.createDirectories(Paths.get(UploadConfig.STAGING_DIR));
+            s.stagedPath = UploadSessions.stagedPathOf(s.id);
+            Files.deleteIfExists(s.stagedPath);
+            Files.createFile(s.stagedPath);
+        } catch (IOException e) {
+            UploadSessions.remove(s);
+            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+            return;
+        }
+
+        MediaJson.sendJson(resp, 201, statusJson(s));
+    }
+
+    private void handleChunk(HttpServletRequest req, HttpServletResponse resp, UploadSession s) throws IOException {
+        if (s == null) {
+            MediaJson.sendJson(resp, 404, MediaJson.fail("Upload session not found"));
+            return;
+        }
+
+        Matcher m = CONTENT_RANGE.matcher(String.valueOf(req.getHeader("Content-Range")).trim());
+        String chunkSha = req.getHeader("X-Chunk-SHA256");
+        if (!m.matches() || chunkSha == null) {
+            MediaJson.sendJson(resp, 400, MediaJson.fail("Content-Range and X-Chunk-SHA256 are required"));
+            return;
+        }
+
+        long start, end, total;
+        try {
+            start = Long.parseLong(m.group(1));
+            end = Long.parseLong(m.group(2));
+            total = Long.parseLong(m.group(3));
+        } catch (NumberFormatException e) {
+            MediaJson.sendJson(resp, 400, MediaJson.fail("invalid Content-Range"));
+            return;
+        }
+        long len = end - start + 1;
+        if (total != s.size || end < start || end >= s.size || len > UploadSessions.MAX_CHUNK_BYTES) {
+            MediaJson.sendJson(resp, 400, MediaJson.fail("invalid Content-Range"));
+            return;
+        }
+
+        // 1) 잠금 안에서 자리만 잡는다 (본문을 받는 동안 잠그면 같은 세션의 GET/DELETE/purge가 느린 클라이언트를 기다린다)
+        MessageDigest whole;
+        synchronized (s) {
+            if (s.finished) {
+                MediaJson.sendJson(resp, 404, MediaJson.fail("Upload session not found"));
+                return;
+            }
+            s.lastActivityAt = System.currentTimeMillis();
+
+            // 이미 받은 청크를 다시 보낸 경우(응답 유실 후 재시도)는 그냥 현재 위치를 알려준다
+            if (end < s.offset) {
+                MediaJson.sendJson(resp, 200, statusJson(s));
+                return;
+            }
+            // 위치가 다르거나 다른 요청이 이미 이 위치를 받는 중
+            if (start != s.offset || s.receiving) {
+                MediaJson.sendJson(resp, 409, statusJson(s));
+                return;
+            }
+
+            try {
+                whole = (MessageDigest) s.digest.clone();
+            } catch (CloneNotSupportedException e) {
+                MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+                return;
+            }
+            s.receiving = true;
+        }
+
+        // 2) 본문은 잠금 밖에서 받는다. receiving이 켜져 있는 동안 offset 뒤쪽은 이 요청만 쓴다
+        MessageDigest chunk = ContentHash.newDigest();
+        long remaining = len;
+        boolean ok = false;
+        try {
+            try (FileChannel ch = FileChannel.open(s.stagedPath, StandardOpenOption.WRITE)) {
+                ch.position(start);
+                InputStream in = req.getInputStream();
+                byte[] buf = new byte[64 * 1024];
+                while (remaining > 0) {
+                    int r = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                    if (r < 0) break;
+                    chunk.update(buf, 0, r);
+                    whole.update(buf, 0, r);
+                    ByteBuffer bb = ByteBuffer.wrap(buf, 0, r);
+                    while (bb.hasRemaining()) ch.write(bb);
+                    remaining -= r;
+                }
+            } catch (IOException e) {
+                // 연결 끊김 등. 아래에서 offset 뒤쪽을 버린다 (세션이 이미 정리돼 파일이 없을 수도 있다)
+                remaining = -1;
+            }
+            ok = remaining == 0 && ContentHash.hex(chunk.digest()).equalsIgnoreCase(chunkSha.trim());
+
+            // 3) 다시 잠그고 확인한 뒤 반영한다
+            synchronized (s) {
+                s.receiving = false;
+                s.lastActivityAt = System.currentTimeMillis();
+                if (s.finished) {
+                    // 받는 사이에 취소/만료됐다. staging 파일은 정리한 쪽이 지웠다
+                    MediaJson.sendJson(resp, 404, MediaJson.fail("Upload session not found"));
+                    return;
+                }
+                if (!ok || s.offset != start) {
+                    // 쓰다 만 바이트는 버린다
+                    try (FileChannel ch = FileChannel.open(s.stagedPath, StandardOpenOption.WRITE)) {
+                        if (ch.size() > s.offset) ch.truncate(s.offset);
+                    } catch (IOException ignored) {}
+
+                    if (s.offset != start) MediaJson.sendJson(resp, 409, statusJson(s));
+                    else if (remaining != 0) MediaJson.sendJson(resp, 400, MediaJson.fail("Incomplete chunk"));
+                    else MediaJson.sendJson(resp, 400, MediaJson.fail("Chunk checksum mismatch"));
+                    return;
+                }
+
+                s.digest = whole;
+                s.offset = end + 1;
+                MediaJson.sendJson(resp, 200, statusJson(s));
+            }
+        } finally {
+            if (!ok) {
+                synchronized (s) {
+                    s.receiving = false;
+                }
+            }
+        }
+    }
+
+    private void handleFinalize(HttpServletResponse resp, UploadSession s) throws IOException {
+        if (s == null) {
+            MediaJson.sendJson(resp, 404, MediaJson.fail("Upload session not found"));
+            return;
+        }
+
+        NewMedia row;
+        synchronized (s) {
+            if (s.finished) {
+                MediaJson.sendJson(resp, 404, MediaJson.fail("Upload session not found"));
+                return;
+            }
+            if (s.offset != s.size) {
+                MediaJson.sendJson(resp, 409, statusJson(s));
+                return;
+            }
+
+            String sha256 = ContentHash.hex(s.digest.digest());
+            if (s.expectedSha256 != null && !s.expectedSha256.equals(sha256)) {
+                s.finished = true;
+                UploadSessions.remove(s);
+                MediaJson.sendJson(resp, 400, MediaJson.fail("File checksum mismatch"));
+                return;
+            }
+
+            // ✅ 세션 생성 때 선언한 mimeType이 아니라 받은 내용으로 판별
+            String mime = ContentSniffer.sniff(s.stagedPath);
+            s.finished = true;
+            if (mime == null) {
+                UploadSessions.remove(s);
+                MediaJson.sendJson(resp, 400, MediaJson.fail("Unsupported file type"));
+                return;
+            }
+
+            String ext = MediaRequest.extensionOf(s.originalName);
+            StoredUpload stored = new StoredUpload();
+            stored.savedName = UploadConfig.CONTENT_ADDRESSED
+                    ? ContentHash.blobName(sha256, ext)
+                    : UUID.randomUUID().toString().replace("-", "") + (ext.isEmpty() ? "" : "." + ext);
+            stored.publicUrl = UploadConfig.PUBLIC_PREFIX + stored.savedName;
+            stored.originalName = s.originalName;
+            stored.mimeType = mime;
+            stored.sizeBytes = s.size;
+            stored.type = ContentSniffer.isVideo(mime) ? "video" : "image";
+            stored.sha256 = UploadConfig.CONTENT_ADDRESSED ? sha256 : null;
+            stored.stagedPath = s.stagedPath;
+
+            row = new NewMedia();
+            row.stored = stored;
+            row.description = s.description;
+            row.locationName = s.locationName;
+            row.tagNames = s.tagNames;
+        }
+
+        if ("video".equals(row.stored.type)) MediaUpload.applyFastStart(row.stored);
+
+        try {
+            List<MediaDto> created = service.persistUploads(s.planetId, Collections.singletonList(row));
+
+            List<String> createdJson = new ArrayList<String>();
+            for (int i = 0; i < created.size(); i++) {
+                createdJson.add(MediaJson.mediaToJson(created.get(i)));
+            }
+            MediaJson.sendJson(resp, 201, "{\"success\":true,\"media\":[" + MediaJson.join(createdJson) + "]}");
+        } catch (StorageQuotaExceededException e) {
+            MediaService.sendQuotaExceeded(resp);
+        } catch (Exception e) {
+            MediaJson.sendJson(resp, 500, MediaJson.fail("Server Error"));
+        } finally {
+            UploadSessions.remove(s); // 성공이면 파일은 이미 promote 됨, 실패면 persistUploads가 지움
+        }
+    }
+
+    private static String statusJson(UploadSession s) {
+        return "{\"success\":true,\"data\":{"
+                + "\"sessionId\":" + MediaJson.jstr(s.id)
+                + ",\"offset\":" + s.offset
+                + ",\"size\":" + s.size
+                + ",\"maxChunkBytes\":" + UploadSessions.MAX_CHUNK_BYTES
+                + ",\"complete\":" + (s.offset == s.size ? "true" : "false")
+                + "}}";
+    }
+
+    private static String[] pathParts(HttpServletRequest req) {
+        String p = MediaRequest.action(req);
+        if (p.isEmpty()) return new String[0];
+        return p.split("/");
+    }
+}
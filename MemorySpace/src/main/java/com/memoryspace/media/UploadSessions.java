@@ -0,0 +1,170 @@
+package com.memoryspace.media;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 진행 중인 업로드 세션 보관소 (프로세스 메모리).
+ *
+ * 세션 수를 사용자별/전체로 제한하고, idle 시간이 지난 세션은 staging 파일과 함께 정리한다
+ * (새 세션을 만들 때와 purgeIntervalMs마다).
+ * 서버가 재시작되면 세션은 사라지고 클라이언트는 새 세션으로 다시 올린다.
+ * 그래서 시작/종료 때 STAGING_DIR에 남은 session-*.part 파일은 모두 버린다.
+ */
+public final class UploadSessions {
+
+    static final long MAX_FILE_BYTES =
+            Long.getLong("memoryspace.upload.session.maxBytes", 2L * 1024 * 1024 * 1024);
+    static final int MAX_CHUNK_BYTES =
+            Integer.getInteger("memoryspace.upload.session.maxChunkBytes", 8 * 1024 * 1024);
+    static final int MAX_PER_USER =
+            Integer.getInteger("memoryspace.upload.session.maxPerUser", 4);
+    static final int MAX_TOTAL =
+            Integer.getInteger("memoryspace.upload.session.maxTotal", 200);
+    static final long IDLE_TIMEOUT_MS =
+            Long.getLong("memoryspace.upload.session.idleTimeoutMs", 60L * 60 * 1000);
+    private static final long PURGE_INTERVAL_MS =
+            Long.getLong("memoryspace.upload.session.purgeIntervalMs", 5L * 60 * 1000);
+
+    private static final String STAGED_PREFIX = "session-";
+    private static final String STAGED_SUFFIX = ".part";
+
+    private static final Map<String, UploadSession> SESSIONS = new ConcurrentHashMap<String, UploadSession>();
+    private static ScheduledExecutorService scheduler;
+
+    private UploadSessions() {}
+
+    /** 지난 실행에서 남은 staging 파일을 지우고 정기 정리를 예약한다. */
+    static synchronized void start() {
+        sweepStaged();
+        if (scheduler != null || PURGE_INTERVAL_MS <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "upload-session-purge");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                purgeExpired();
+            } catch (RuntimeException e) {
+                System.err.println("[upload-session] purge failed: " + e.getMessage());
+            }
+        }, PURGE_INTERVAL_MS, PURGE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** 정기 정리를 멈추고 모든 세션과 staging 파일을 버린다 (재시작 후에는 이어 올릴 수 없다). */
+    static synchronized void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+        scheduler = null;
+
+        List<UploadSession> all = new ArrayList<UploadSession>(SESSIONS.values());
+        SESSIONS.clear();
+        for (UploadSession s : all) {
+            synchronized (s) {
+                s.finished = true;
+                deleteStaged(s);
+            }
+        }
+        sweepStaged();
+    }
+
+    /** 한도를 넘으면 null */
+    static synchronized UploadSession create(long userId) {
+        purgeExpired();
+
+        int mine = 0;
+        for (UploadSession s : SESSIONS.values()) {
+            if (s.userId == userId) mine++;
+        }
+        if (mine >= MAX_PER_USER || SESSIONS.size() >= MAX_TOTAL) return null;
+
+        UploadSession s = new UploadSession();
+        s.id = UUID.randomUUID().toString().replace("-", "");
+        s.userId = userId;
+        s.createdAt = System.currentTimeMillis();
+        s.lastActivityAt = s.createdAt;
+        SESSIONS.put(s.id, s);
+        return s;
+    }
+
+    /** 본인 세션만 돌려준다. 없거나 남의 것이면 null */
+    static UploadSession get(String id, long userId) {
+        if (id == null) return null;
+        UploadSession s = SESSIONS.get(id);
+        if (s == null || s.userId != userId) return null;
+        return s;
+    }
+
+    /** 세션을 목록에서 빼고 staging 파일을 지운다 (finalize에서 promote 된 뒤라면 파일은 이미 없다). */
+    static void remove(UploadSession s) {
+        SESSIONS.remove(s.id, s);
+        deleteStaged(s);
+    }
+
+    static synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        List<UploadSession> expired = new ArrayList<UploadSession>();
+        Iterator<UploadSession> it = SESSIONS.values().iterator();
+        while (it.hasNext()) {
+            UploadSession s = it.next();
+            if (now - s.lastActivityAt > IDLE_TIMEOUT_MS) {
+                it.remove();
+                expired.add(s);
+            }
+        }
+        for (UploadSession s : expired) {
+            synchronized (s) {
+                s.finished = true;
+                deleteStaged(s);
+            }
+        }
+    }
+
+    /** 메모리에 세션이 없는 session-*.part 파일을 지운다. */
+    private static void sweepStaged() {
+        Path dir = Paths.get(UploadConfig.STAGING_DIR);
+        if (!Files.isDirectory(dir)) return;
+
+        int removed = 0;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, STAGED_PREFIX + "*" + STAGED_SUFFIX)) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                String id = n.substring(STAGED_PREFIX.length(), n.length() - STAGED_SUFFIX.length());
+                if (SESSIONS.containsKey(id)) continue;
+                try {
+                    if (Files.deleteIfExists(p)) removed++;
+                } catch (IOException e) {
+                    System.err.println("[upload-session] cleanup failed: " + p + " (" + e.getMessage() + ")");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[upload-session] staging sweep failed: " + e.getMessage());
+        }
+        if (removed > 0) System.err.println("[upload-session] removed " + removed + " stale staging file(s)");
+    }
+
+    static Path stagedPathOf(String id) {
+        return Paths.get(UploadConfig.STAGING_DIR, STAGED_PREFIX + id + STAGED_SUFFIX);
+    }
+
+    private static void deleteStaged(UploadSession s) {
+        if (s.stagedPath == null) return;
+        try {
+            Files.deleteIfExists(s.stagedPath);
+        } catch (IOException e) {
+            System.err.println("[upload-session] cleanup failed: " + s.stagedPath + " (" + e.getMessage() + ")");
+        }
+    }
+}
@@ -1,18 +1,55 @@
 package com.memoryspace.media;
 
+import com.memoryspace.storage.BlobInfo;
+import com.memoryspace.storage.BlobStore;
+import com.memoryspace.storage.BlobStores;
+
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
 
-@WebServlet("/uploads/*")
+/**
+ * /uploads/<name> 정적 파일 응답.
+ *
+ * - Range: 단일 구간은 206 + Content-Range, 여러 구간은 206 multipart/byteranges (영상 탐색/이어받기)
+ * - If-Range: ETag 또는 Last-Modified가 맞을 때만 Range를 따르고, 아니면 전체 200
+ * - If-None-Match / If-Modified-Since가 현재 ETag / Last-Modified와 맞으면 304 (본문 없음)
+ * - HEAD: 같은 헤더만 보내고 파일은 열지 않는다
+ * - 자주 쓰는 작은 파일은 HotBlobCache(off-heap)에서 파일 시스템 호출 없이 보낸다
+ * - 캐시에 없으면 MediaMetaIndex의 검증된 MIME/크기로 헤더를 만든다
+ * - 나머지 본문은 BlobSender로 보낸다 (Tomcat sendfile -> transferTo -> 복사 루프)
+ * - ?w=&h=&fit= 은 ImageResizer가 만든(또는 디스크에 있는) 변형 파일로 바꿔서 같은 경로로 보낸다
+ * - sendfile을 못 쓰는 큰 응답은 AsyncBlobWriter로 비동기 전송 (느린 클라이언트가 워커 스레드를 붙잡지 않게)
+ */
+@WebServlet(urlPatterns = "/uploads/*", asyncSupported = true)
 public class UploadsServlet extends HttpServlet {
 
-    private static final String UPLOAD_DIR = UploadConfig.UPLOAD_DIR;
+    private final BlobStore store = BlobStores.get();
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        serve(req, resp, true);
+    }
+
+    @Override
+    protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        serve(req, resp, false);
+    }
+
+    private void serve(HttpServletRequest req, HttpServletResponse resp, boolean body) throws IOException {
         String pathInfo = req.getPathInfo(); // "/abc.jpg"
         if (pathInfo == null || pathInfo.length() <= 1) {
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
@@ -25,32 +62,237 @@ public class UploadsServlet extends HttpServlet {
             return;
         }
 
-        Path filePath = Paths.get(UPLOAD_DIR, filename);
-
-        if (!Files.exists(filePath) || !Files.isRegularFile(filePath)) {
-            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+        if (filename.startsWith(".")) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND); // .staging 등
             return;
         }
 
-        String mime = Files.probeContentType(filePath);
-        if (mime == null) mime = "application/octet-stream";
+        // ?w=&h=&fit= : 허용된 크기의 변형 파일로 바꿔서 아래 정적 경로로 보낸다
+        if (req.getQueryString() != null && ImageResizer.isResizeRequest(req)) {
+            filename = ImageResizer.variantFor(store, filename, req, resp);
+            if (filename == null) return; // 에러 응답을 이미 보냄
+        }
+
+        // 자주 쓰는 파일은 메모리에서: 적중하면 stat/probe 없이 캐시된 메타데이터를 쓴다
+        HotBlobCache.Entry hot = HotBlobCache.get(store, filename);
+        BlobInfo info = null;
+        long size, lastModified;
+        String mime, etag;
+        if (hot != null) {
+            size = hot.size;
+            lastModified = hot.lastModified;
+            mime = hot.mime;
+            etag = hot.etag;
+        } else {
+            // 크기/수정 시각/MIME은 업로드 때 검증해 둔 색인에서 (probeContentType 없음)
+            MediaMetaIndex.Meta meta = MediaMetaIndex.get(store, filename);
+            if (meta == null) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+
+            info = meta.info;
+            mime = meta.mime;
+            etag = etagOf(filename, info);
+            size = info.size;
+            lastModified = info.lastModified;
+        }
 
-        resp.setContentType(mime);
         resp.setHeader("X-Content-Type-Options", "nosniff");
         resp.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        resp.setHeader("Accept-Ranges", "bytes");
+        resp.setHeader("ETag", etag);
+        resp.setDateHeader("Last-Modified", lastModified);
+
+        // 캐시 재검증: 본문/Range보다 먼저 본다 (HEAD도 같다)
+        if (notModified(req, etag, lastModified)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<long[]> ranges = null;
+        String rangeHeader = req.getHeader("Range");
+        if (rangeHeader != null && ifRangeMatches(req.getHeader("If-Range"), etag, lastModified)) {
+            ranges = ByteRanges.parse(rangeHeader, size);
+        }
+
+        if (ranges == ByteRanges.UNSATISFIABLE) {
+            resp.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            resp.setHeader("Content-Range", "bytes */" + size);
+            resp.setContentLengthLong(0);
+            return;
+        }
+
+        // 본문을 보낼 GET 미스: 넣을 만한 파일이면 지금 읽어 넣고 그 버퍼로 보낸다
+        if (hot == null && body) hot = HotBlobCache.admit(filename, info, mime, etag);
+
+        if (ranges == null) {
+            resp.setContentType(mime);
+            resp.setContentLengthLong(size);
+            if (!body) return;
+
+            send(req, resp, filename, info, hot, 0, size);
+            return;
+        }
+
+        resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+        if (ranges.size() == 1) {
+            long[] r = ranges.get(0);
+            long len = r[1] - r[0] + 1;
+            resp.setContentType(mime);
+            resp.setHeader("Content-Range", "bytes " + r[0] + "-" + r[1] + "/" + size);
+            resp.setContentLengthLong(len);
+            if (!body) return;
+
+            send(req, resp, filename, info, hot, r[0], len);
+            return;
+        }
 
-        long len = Files.size(filePath);
-        resp.setContentLengthLong(len);
+        // 여러 구간: 각 구간 헤더를 미리 만들어 전체 길이를 계산한다
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<byte[]>();
+        long total = 0;
+        for (long[] r : ranges) {
+            byte[] head = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + mime + "\r\n"
+                    + "Content-Range: bytes " + r[0] + "-" + r[1] + "/" + size + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(head);
+            total += head.length + (r[1] - r[0] + 1);
+        }
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        total += tail.length;
+
+        resp.setContentType("multipart/byteranges; boundary=" + boundary);
+        resp.setContentLengthLong(total);
+        if (!body) return;
+
+        List<AsyncBlobWriter.Segment> segments = new ArrayList<AsyncBlobWriter.Segment>();
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] r = ranges.get(i);
+            segments.add(AsyncBlobWriter.Segment.bytes(partHeaders.get(i)));
+            segments.add(AsyncBlobWriter.Segment.range(r[0], r[1] - r[0] + 1));
+        }
+        segments.add(AsyncBlobWriter.Segment.bytes(tail));
+
+        // 스트림을 닫으면 응답이 커밋되므로 flush만 한다 (닫는 것은 컨테이너가)
+        OutputStream out;
+        try {
+            if (AsyncBlobWriter.start(req, resp, store, filename, info, hot, segments, total)) return;
+
+            out = resp.getOutputStream();
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] r = ranges.get(i);
+                out.write(partHeaders.get(i));
+                if (hot != null) writeHot(hot, r[0], r[1] - r[0] + 1, out);
+                else BlobSender.copy(store, filename, info, r[0], r[1] - r[0] + 1, out);
+            }
+            out.write(tail);
+        } catch (NoSuchFileException e) {
+            fileVanished(resp, filename, e);
+            return;
+        }
+        out.flush();
+    }
+
+    /**
+     * 강한 ETag. 내용 주소 이름(sha256.ext)은 해시가 곧 내용이므로 그대로 쓰고,
+     * 그 외(예전 UUID 이름, 파생본)는 크기와 수정 시각으로 만든다. 요청마다 해시를 계산하지 않는다.
+     */
+    static String etagOf(String name, BlobInfo info) {
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        if (isSha256Hex(base)) return "\"" + base + "\"";
+        return "\"" + Long.toHexString(info.size) + "-" + Long.toHexString(info.lastModified) + "\"";
+    }
 
-        try (InputStream in = Files.newInputStream(filePath);
-             OutputStream out = resp.getOutputStream()) {
+    private static boolean isSha256Hex(String s) {
+        if (s.length() != 64) return false;
+        for (int i = 0; i < 64; i++) {
+            char c = s.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
 
-            byte[] buf = new byte[8192];
-            int r;
-            while ((r = in.read(buf)) != -1) {
-                out.write(buf, 0, r);
+    /**
+     * If-None-Match가 있으면 그것만 본다 (약한 비교, "*" 허용).
+     * 없을 때만 If-Modified-Since를 초 단위로 비교한다.
+     */
+    private static boolean notModified(HttpServletRequest req, String etag, long lastModified) {
+        String inm = req.getHeader("If-None-Match");
+        if (inm != null) {
+            for (String tag : inm.split(",")) {
+                String t = tag.trim();
+                if ("*".equals(t)) return true;
+                if (t.startsWith("W/")) t = t.substring(2);
+                if (t.equals(etag)) return true;
             }
-            out.flush();
+            return false;
         }
+
+        String ims = req.getHeader("If-Modified-Since");
+        if (ims == null) return false;
+        long since = parseHttpDate(ims.trim());
+        return since >= 0 && lastModified / 1000 <= since / 1000;
+    }
+
+    /** If-Range가 없거나 현재 표현과 같으면 true. 약한 ETag는 일치로 보지 않는다. */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) return true;
+        String v = ifRange.trim();
+        if (v.startsWith("\"") || v.startsWith("W/")) return v.equals(etag);
+
+        long date = parseHttpDate(v);
+        return date >= 0 && date / 1000 == lastModified / 1000;
+    }
+
+    private static long parseHttpDate(String v) {
+        SimpleDateFormat f = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        f.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date d = f.parse(v);
+            return d.getTime();
+        } catch (java.text.ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 본문 한 구간: sendfile이 되면 커넥터에 넘기고, 큰 응답은 비동기로, 나머지는 직접 쓴다
+     * (캐시에 있으면 메모리에서).
+     */
+    private void send(HttpServletRequest req, HttpServletResponse resp, String name, BlobInfo info,
+                      HotBlobCache.Entry hot, long start, long len) throws IOException {
+        if (hot == null && BlobSender.trySendfile(req, info, start, len)) return;
+
+        OutputStream out;
+        try {
+            if (AsyncBlobWriter.start(req, resp, store, name, info, hot, AsyncBlobWriter.single(start, len), len)) return;
+
+            out = resp.getOutputStream();
+            if (hot != null) writeHot(hot, start, len, out);
+            else BlobSender.copy(store, name, info, start, len, out);
+        } catch (NoSuchFileException e) {
+            fileVanished(resp, name, e);
+            return;
+        }
+        out.flush();
+    }
+
+    /** 색인을 확인한 뒤 파일이 사라짐: 아직 아무것도 안 보냈으면 404로 바꾼다 */
+    private static void fileVanished(HttpServletResponse resp, String name, NoSuchFileException e) throws IOException {
+        MediaMetaIndex.invalidate(name);
+        if (resp.isCommitted()) throw e;
+        resp.reset();
+        resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    private static void writeHot(HotBlobCache.Entry hot, long start, long len, OutputStream out) throws IOException {
+        ByteBuffer b = hot.slice(start, len);
+        WritableByteChannel ch = Channels.newChannel(out);
+        while (b.hasRemaining()) ch.write(b);
+        HotBlobCache.recordServed(len);
     }
 }
@@ -0,0 +1,177 @@
+package com.memoryspace.media;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 보는 사람(viewer) 기준 좋아요/즐겨찾기/신고 상태.
+ *
+ * 미디어 행마다 EXISTS 서브쿼리 3개를 돌리던 것을 대신한다.
+ * - 사용자별 like/favorite/report mediaId 집합을 한 번의 UNION ALL 쿼리로 읽어 메모리에 캐시한다.
+ * - 집합이 너무 큰 사용자는 캐시하지 않고, 현재 페이지 id들만 한 번의 쿼리로 확인한다.
+ * - 상태가 바뀌면 invalidate(userId)로 비운다. 다른 경로(관리 도구 등)의 변경을 위해 TTL도 둔다.
+ */
+public final class ViewerInteractionCache {
+
+    static final int LIKED = 1;
+    static final int STARRED = 2;
+    static final int REPORTED = 4;
+
+    private static final int MAX_USERS =
+            Integer.getInteger("memoryspace.media.interactionCache.maxUsers", 1000);
+    private static final int MAX_ENTRIES_PER_USER =
+            Integer.getInteger("memoryspace.media.interactionCache.maxEntriesPerUser", 5000);
+    private static final long TTL_MS =
+            Long.getLong("memoryspace.media.interactionCache.ttlMs", 60000L);
+
+    private static final int IN_CHUNK = 500;
+
+    // accessOrder=true -> LRU, MAX_USERS 초과 시 가장 오래 안 쓴 사용자부터 제거
+    private static final LinkedHashMap<Long, ViewerState> CACHE =
+            new LinkedHashMap<Long, ViewerState>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, ViewerState> eldest) {
+                    return size() > MAX_USERS;
+                }
+            };
+
+    // invalidate()마다 증가. 로딩 중에 무효화가 끼면 그 결과는 캐시에 넣지 않는다.
+    private static final AtomicLong EPOCH = new AtomicLong();
+
+    private ViewerInteractionCache() {}
+
+    /** userId의 좋아요/즐겨찾기/신고가 바뀌었을 때 호출. */
+    public static void invalidate(long userId) {
+        EPOCH.incrementAndGet();
+        synchronized (CACHE) {
+            CACHE.remove(Long.valueOf(userId));
+        }
+    }
+
+    /** list의 liked/starred/reported를 userId 기준으로 채운다. */
+    static void apply(Connection con, long userId, List<MediaDto> list) throws SQLException {
+        if (list.isEmpty()) return;
+
+        Map<Long, Integer> flags = flagsFor(con, userId, list);
+        for (int i = 0; i < list.size(); i++) {
+            MediaDto d = list.get(i);
+            Integer f = flags.get(Long.valueOf(d.id));
+            int v = (f != null) ? f.intValue() : 0;
+            d.liked = (v & LIKED) != 0;
+            d.starred = (v & STARRED) != 0;
+            d.reported = (v & REPORTED) != 0;
+        }
+    }
+
+    private static Map<Long, Integer> flagsFor(Connection con, long userId, List<MediaDto> list) throws SQLException {
+        Long key = Long.valueOf(userId);
+        long now = System.currentTimeMillis();
+
+        ViewerState st;
+        synchronized (CACHE) {
+            st = CACHE.get(key);
+        }
+        if (st != null && st.expiresAt <= now) st = null;
+
+        if (st == null) {
+            long epoch = EPOCH.get();
+            st = new ViewerState(loadAll(con, userId), now + TTL_MS);
+            if (EPOCH.get() == epoch) {
+                synchronized (CACHE) {
+                    CACHE.put(key, st);
+                }
+            }
+        }
+
+        if (st.flags != null) return st.flags;
+
+        // 집합이 커서 캐시하지 않는 사용자: 이 페이지만 확인
+        return loadForPage(con, userId, list);
+    }
+
+    /**
+     * 사용자 전체 상태. MAX_ENTRIES_PER_USER를 넘으면 null (페이지 단위 조회로 대체).
+     */
+    private static Map<Long, Integer> loadAll(Connection con, long userId) throws SQLException {
+        String sql =
+                "SELECT mediaId, " + LIKED + " FROM media_likes WHERE userId=? " +
+                "UNION ALL SELECT mediaId, " + STARRED + " FROM media_favorites WHERE userId=? " +
+                "UNION ALL SELECT mediaId, " + REPORTED + " FROM media_reports WHERE reporterUserId=? " +
+                "LIMIT ?";
+
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = con.prepareStatement(sql);
+            ps.setLong(1, userId);
+            ps.setLong(2, userId);
+            ps.setLong(3, userId);
+            ps.setInt(4, MAX_ENTRIES_PER_USER + 1);
+            rs = ps.executeQuery();
+
+            Map<Long, Integer> out = new HashMap<Long, Integer>();
+            int rows = 0;
+            while (rs.next()) {
+                if (++rows > MAX_ENTRIES_PER_USER) return null;
+                merge(out, rs.getLong(1), rs.getInt(2));
+            }
+            return out;
+        } finally {
+            MediaJson.closeQuietly(rs);
+            MediaJson.closeQuietly(ps);
+        }
+    }
+
+    private static Map<Long, Integer> loadForPage(Connection con, long userId, List<MediaDto> list) throws SQLException {
+        Map<Long, Integer> out = new HashMap<Long, Integer>();
+
+        for (int from = 0; from < list.size(); from += IN_CHUNK) {
+            int to = Math.min(from + IN_CHUNK, list.size());
+            String in = MediaDao.placeholders(to - from);
+            String sql =
+                    "SELECT mediaId, " + LIKED + " FROM media_likes WHERE userId=? AND mediaId IN (" + in + ") " +
+                    "UNION ALL SELECT mediaId, " + STARRED + " FROM media_favorites WHERE userId=? AND mediaId IN (" + in + ") " +
+                    "UNION ALL SELECT mediaId, " + REPORTED + " FROM media_reports WHERE reporterUserId=? AND mediaId IN (" + in + ")";
+
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            try {
+                ps = con.prepareStatement(sql);
+                int idx = 1;
+                for (int t = 0; t < 3; t++) {
+                    ps.setLong(idx++, userId);
+                    for (int i = from; i < to; i++) ps.setLong(idx++, list.get(i).id);
+                }
+                rs = ps.executeQuery();
+                while (rs.next()) merge(out, rs.getLong(1), rs.getInt(2));
+            } finally {
+                MediaJson.closeQuietly(rs);
+                MediaJson.closeQuietly(ps);
+            }
+        }
+        return out;
+    }
+
+    private static void merge(Map<Long, Integer> out, long mediaId, int flag) {
+        Long k = Long.valueOf(mediaId);
+        Integer prev = out.get(k);
+        out.put(k, Integer.valueOf((prev != null ? prev.intValue() : 0) | flag));
+    }
+
+    private static final class ViewerState {
+        final Map<Long, Integer> flags; // null이면 캐시하지 않는 대형 사용자
+        final long expiresAt;
+
+        ViewerState(Map<Long, Integer> flags, long expiresAt) {
+            this.flags = flags;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.memoryspace.planet;
 
+import com.memoryspace.media.UploadConfig;
+import com.memoryspace.storage.BlobRefDao;
+import com.memoryspace.storage.StorageQuotaExceededException;
+import com.memoryspace.storage.StorageUsageDao;
+
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class PlanetDao {
 
+    private final BlobRefDao blobRefs = new BlobRefDao();
+    private final StorageUsageDao storage = new StorageUsageDao();
+
     public boolean isStarOwner(Connection con, long starId, long userId) throws SQLException {
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -56,7 +66,8 @@ public class PlanetDao {
         String sql =
             "SELECT " +
             "  p.id, p.starId, p.name, p.thumbnailMediaId, p.sortOrder, " +
-            "  m.url AS thumbnailUrl, m.type AS thumbnailType " +
+            "  m.url AS thumbnailUrl, m.type AS thumbnailType, " +
+            "  m.thumbUrl AS thumbnailThumbUrl, m.displayUrl AS thumbnailDisplayUrl " +
             "FROM planets p " +
             "LEFT JOIN planet_media m ON m.id = p.thumbnailMediaId AND m.isDeleted=0 " +
             "WHERE p.starId=? AND p.isDeleted=0 " +
@@ -83,6 +94,8 @@ public class PlanetDao {
                 dto.sortOrder = rs.getInt("sortOrder");
                 dto.thumbnailUrl = rs.getString("thumbnailUrl");
                 dto.thumbnailType = rs.getString("thumbnailType"); // 'image'/'video' :contentReference[oaicite:8]{index=8}
+                dto.thumbnailThumbUrl = rs.getString("thumbnailThumbUrl");
+                dto.thumbnailDisplayUrl = rs.getString("thumbnailDisplayUrl");
 
                 list.add(dto);
             }
@@ -176,29 +189,46 @@ public class PlanetDao {
         }
     }
 
+    /** soft-delete 하고 행성에 있던 살아있는 미디어만큼 소유자 저장 용량에서 뺀다. */
     public int softDeletePlanet(Connection con, long planetId, long starId) throws SQLException {
+        // UPDATE 전에 합계를 구한다 (삭제 후에는 행성이 살아있지 않아 0)
+        long[] live = storage.liveUsageOfPlanet(con, planetId);
+        Map<String, Integer> refs = blobRefs.liveRefsOfPlanet(con, planetId, UploadConfig.PUBLIC_PREFIX);
+
         PreparedStatement ps = null;
+        int updated;
         try {
             ps = con.prepareStatement(
                     "UPDATE planets SET isDeleted=1, deletedAt=NOW() WHERE id=? AND starId=? AND isDeleted=0"
             );
             ps.setLong(1, planetId);
             ps.setLong(2, starId);
-            return ps.executeUpdate();
+            updated = ps.executeUpdate();
         } finally {
             PlanetJson.closeQuietly(ps);
         }
+
+        if (updated == 1) {
+            storage.add(con, storage.ownerOfPlanet(con, planetId), -live[0], (int) -live[1]);
+            blobRefs.release(con, refs);
+        }
+        return updated;
     }
 
-    public long insertMedia(Connection con, long planetId, StoredFile stored) throws SQLException {
+    /** 소유자 저장 용량을 넘으면 StorageQuotaExceededException (호출부가 롤백). */
+    public long insertMedia(Connection con, long planetId, StoredFile stored)
+            throws SQLException, StorageQuotaExceededException {
+        storage.reserve(con, storage.ownerOfPlanet(con, planetId), stored.sizeBytes, 1);
+
         String type = stored.isVideo ? "video" : "image";
 
         PreparedStatement ps = null;
         ResultSet keys = null;
         try {
             ps = con.prepareStatement(
-                    "INSERT INTO planet_media (planetId, type, url, originalName, mimeType, sizeBytes, description, isDeleted) " +
-                    "VALUES (?,?,?,?,?,?,NULL,0)",
+                    "INSERT INTO planet_media (planetId, type, url, originalName, mimeType, sizeBytes, " +
+                    "  durationMs, width, height, videoCodec, description, isDeleted) " +
+                    "VALUES (?,?,?,?,?,?,?,?,?,?,NULL,0)",
                     Statement.RETURN_GENERATED_KEYS
             );
             ps.setLong(1, planetId);
@@ -207,16 +237,31 @@ public class PlanetDao {
             ps.setString(4, stored.originalName);
             ps.setString(5, stored.mimeType);
             ps.setLong(6, stored.sizeBytes);
+            ps.setObject(7, stored.durationMs, Types.BIGINT);
+            ps.setObject(8, stored.width, Types.INTEGER);
+            ps.setObject(9, stored.height, Types.INTEGER);
+            ps.setString(10, stored.videoCodec);
 
             ps.executeUpdate();
             keys = ps.getGeneratedKeys();
             if (!keys.next()) throw new SQLException("Failed to get mediaId");
-            return keys.getLong(1);
+            long mediaId = keys.getLong(1);
+
+            addBlobRef(con, stored);
+            return mediaId;
         } finally {
             PlanetJson.closeQuietly(keys);
             PlanetJson.closeQuietly(ps);
         }
     }
+
+    private void addBlobRef(Connection con, StoredFile stored) throws SQLException {
+        if (stored.sha256 == null) return;
+        blobRefs.increment(con,
+                Collections.singletonList(stored.savedName),
+                Collections.singletonList(stored.sha256),
+                Collections.singletonList(Long.valueOf(stored.sizeBytes)));
+    }
  // ✅ 대표 썸네일을 "INSERT"가 아닌 "UPDATE"로 교체하기 위한 헬퍼
     public Long getThumbnailMediaId(Connection con, long planetId, long starId) throws SQLException {
         PreparedStatement ps = null;
@@ -239,13 +284,40 @@ public class PlanetDao {
         }
     }
 
-    public void updateMediaFile(Connection con, long mediaId, StoredFile stored) throws SQLException {
+    /** 파일 교체. 크기 차이만큼 저장 용량에 반영하고, 넘으면 StorageQuotaExceededException. */
+    public void updateMediaFile(Connection con, long mediaId, StoredFile stored)
+            throws SQLException, StorageQuotaExceededException {
         String type = stored.isVideo ? "video" : "image";
 
+        // 교체되는 기존 파일의 참조를 놓는다 (FOR UPDATE: 같은 행 동시 교체 시 이중 감소 방지)
+        String oldUrl = null;
+        long oldSize = 0;
+        long planetId = -1;
+        PreparedStatement sel = null;
+        ResultSet rs = null;
+        try {
+            sel = con.prepareStatement("SELECT url, sizeBytes, planetId FROM planet_media WHERE id=? AND isDeleted=0 FOR UPDATE");
+            sel.setLong(1, mediaId);
+            rs = sel.executeQuery();
+            if (rs.next()) {
+                oldUrl = rs.getString(1);
+                oldSize = rs.getLong(2);
+                planetId = rs.getLong(3);
+            }
+        } finally {
+            PlanetJson.closeQuietly(rs);
+            PlanetJson.closeQuietly(sel);
+        }
+        if (oldUrl == null) return;
+
+        storage.reserve(con, storage.ownerOfPlanet(con, planetId), stored.sizeBytes - oldSize, 0);
+
         PreparedStatement ps = null;
         try {
             ps = con.prepareStatement(
-                "UPDATE planet_media SET type=?, url=?, originalName=?, mimeType=?, sizeBytes=? " +
+                "UPDATE planet_media SET type=?, url=?, originalName=?, mimeType=?, sizeBytes=?, " +
+                "  durationMs=?, width=?, height=?, videoCodec=?, " +
+                "  thumbUrl=NULL, displayUrl=NULL, variantStatus='pending' " +
                 "WHERE id=? AND isDeleted=0"
             );
             ps.setString(1, type);
@@ -253,10 +325,17 @@ public class PlanetDao {
             ps.setString(3, stored.originalName);
             ps.setString(4, stored.mimeType);
             ps.setLong(5, stored.sizeBytes);
-            ps.setLong(6, mediaId);
+            ps.setObject(6, stored.durationMs, Types.BIGINT);
+            ps.setObject(7, stored.width, Types.INTEGER);
+            ps.setObject(8, stored.height, Types.INTEGER);
+            ps.setString(9, stored.videoCodec);
+            ps.setLong(10, mediaId);
             ps.executeUpdate();
         } finally {
             PlanetJson.closeQuietly(ps);
         }
+
+        addBlobRef(con, stored);
+        blobRefs.decrement(con, BlobRefDao.nameFromUrl(oldUrl, UploadConfig.PUBLIC_PREFIX));
     }
 }
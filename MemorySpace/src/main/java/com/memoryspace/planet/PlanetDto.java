@@ -14,6 +14,8 @@ public class PlanetDto {
     public Long thumbnailMediaId;   // nullable
     public String thumbnailUrl;     // JOIN 결과 (planet_media.url)
     public String thumbnailType;    // image / video
+    public String thumbnailThumbUrl;   // 파생본 (planet_media.thumbUrl, 생성 전이면 null)
+    public String thumbnailDisplayUrl; // 파생본 (planet_media.displayUrl, 생성 전이면 null)
 
     // ===== 생성자(optional) =====
     public PlanetDto() {
@@ -34,6 +34,8 @@ public class PlanetJson {
             thumbObj = "{"
                     + "\"type\":" + jstr(t)
                     + ",\"url\":" + jstr(thumbUrl)
+                    + ",\"thumbUrl\":" + jstr(p.thumbnailThumbUrl)
+                    + ",\"displayUrl\":" + jstr(p.thumbnailDisplayUrl)
                     + "}";
         }
 
@@ -45,6 +47,7 @@ public class PlanetJson {
                 + ",\"thumbnailMediaId\":" + (p.thumbnailMediaId == null ? "null" : String.valueOf(p.thumbnailMediaId))
                 + ",\"thumbnailUrl\":" + jstr(thumbUrl)
                 + ",\"thumbnailType\":" + jstr(thumbType)
+                + ",\"thumbnailThumbUrl\":" + jstr(p.thumbnailThumbUrl)
                 + ",\"thumbnail\":" + thumbObj
                 + "}";
     }
@@ -1,12 +1,15 @@
 package com.memoryspace.planet;
 
 import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.media.ImageDerivatives;
+import com.memoryspace.storage.StorageQuotaExceededException;
 
 import jakarta.servlet.http.*;
 
 import java.io.IOException;
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class PlanetService {
@@ -31,7 +34,8 @@ public class PlanetService {
 
         Connection con = null;
         try {
-            con = DBConnectionUtil.getConnection();
+            // 목록 조회는 읽기 전용 -> replica (방금 쓰기한 사용자는 primary)
+            con = DBConnectionUtil.getReadConnection();
 
             if (!dao.isStarOwner(con, starId, userId.longValue())) {
                 PlanetJson.sendJson(resp, 403, PlanetJson.jsonFail("Forbidden"));
@@ -214,12 +218,19 @@ public class PlanetService {
 
             con.commit();
 
+            if ("image".equals(thumbType)) ImageDerivatives.submit(Collections.singletonList(thumbUrl));
+
             String json = "{\"success\":true,\"data\":{"
                     + "\"thumbnailUrl\":" + (thumbUrl == null ? "null" : PlanetJson.jstr(thumbUrl))
                     + ",\"thumbnailType\":" + (thumbType == null ? "null" : PlanetJson.jstr(thumbType))
                     + "}}";
             PlanetJson.sendJson(resp, 200, json);
 
+        } catch (StorageQuotaExceededException e) {
+            if (con != null) {
+                try { con.rollback(); } catch (Exception ignored) {}
+            }
+            PlanetJson.sendJson(resp, 413, PlanetJson.jsonFail("Storage quota exceeded"));
         } catch (Exception e) {
             if (con != null) {
                 try { con.rollback(); } catch (Exception ignored) {}
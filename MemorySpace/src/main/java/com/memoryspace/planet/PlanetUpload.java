@@ -1,8 +1,15 @@
 package com.memoryspace.planet;
 
+import com.memoryspace.media.ContentSniffer;
+import com.memoryspace.media.MediaMetaIndex;
+import com.memoryspace.media.Mp4FastStart;
+import com.memoryspace.media.UploadConfig;
+import com.memoryspace.storage.BlobStore;
+import com.memoryspace.storage.BlobStores;
+import com.memoryspace.storage.ContentHash;
+
 import jakarta.servlet.http.Part;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.*;
@@ -11,34 +18,54 @@ import java.util.UUID;
 
 public class PlanetUpload {
 
-    private static final String UPLOAD_DIR =
-            System.getProperty("user.home") + File.separator + "memoryspace_uploads";
-    private static final String PUBLIC_PREFIX = "/uploads/";
+    private static final String PUBLIC_PREFIX = UploadConfig.PUBLIC_PREFIX;
+
+    private final BlobStore store = BlobStores.get();
 
     public StoredFile storeUpload(Part part) throws IOException {
-        Files.createDirectories(Paths.get(UPLOAD_DIR));
 
         String original = safeFileName(part.getSubmittedFileName());
-        String mime = part.getContentType();
         long size = part.getSize();
 
-        boolean isVideo = mime != null && mime.toLowerCase(Locale.ROOT).startsWith("video/");
-        boolean isImage = mime != null && mime.toLowerCase(Locale.ROOT).startsWith("image/");
-
-        if (!isImage && !isVideo) {
-            throw new IOException("Unsupported file type: " + mime);
-        }
-
         String ext = extensionOf(original);
         String savedName = UUID.randomUUID().toString().replace("-", "") + (ext.isEmpty() ? "" : "." + ext);
+        String sha256 = null;
+        String mime;
+        boolean isVideo;
+        Mp4FastStart.Result video = null;
 
-        Path dest = Paths.get(UPLOAD_DIR, savedName);
+        // ✅ 임시 파일에 쓰고(내용 주소 모드면 해시 계산) BlobStore로 옮긴다.
+        // 같은 내용이 이미 있으면 put()이 임시 파일만 버리고 기존 파일을 공유한다.
+        Files.createDirectories(Paths.get(UploadConfig.STAGING_DIR));
+        Path tmp = Paths.get(UploadConfig.STAGING_DIR, savedName);
         InputStream in = null;
         try {
             in = part.getInputStream();
-            Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+            if (UploadConfig.CONTENT_ADDRESSED) {
+                sha256 = ContentHash.copyAndHash(in, tmp);
+                savedName = ContentHash.blobName(sha256, ext);
+            } else {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // ✅ 클라이언트가 보낸 Content-Type 대신 실제 내용으로 판별
+            mime = ContentSniffer.sniff(tmp);
+            if (mime == null) throw new IOException("Unsupported file type: " + part.getContentType());
+            isVideo = ContentSniffer.isVideo(mime);
+
+            // 영상은 moov를 앞으로 (다시 쓰면 내용 해시도 바뀐다)
+            if (isVideo) {
+                video = Mp4FastStart.process(tmp, sha256 != null);
+                if (video != null && video.rewritten && sha256 != null) {
+                    sha256 = video.sha256;
+                    savedName = ContentHash.blobName(sha256, ext);
+                }
+            }
+            store.put(savedName, tmp);
+            MediaMetaIndex.record(savedName, store.stat(savedName), mime);
         } finally {
             if (in != null) try { in.close(); } catch (Exception ignored) {}
+            Files.deleteIfExists(tmp);
         }
 
         String publicUrl = PUBLIC_PREFIX + savedName;
@@ -50,6 +77,13 @@ public class PlanetUpload {
         out.mimeType = mime;
         out.sizeBytes = size;
         out.isVideo = isVideo;
+        out.sha256 = sha256;
+        if (video != null) {
+            out.durationMs = video.durationMs;
+            out.width = video.width;
+            out.height = video.height;
+            out.videoCodec = video.videoCodec;
+        }
         return out;
     }
 
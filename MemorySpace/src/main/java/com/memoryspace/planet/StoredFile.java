@@ -7,4 +7,11 @@ public class StoredFile {
     public String mimeType;
     public long sizeBytes;
     public boolean isVideo;
+    public String sha256; // 내용 주소 모드일 때 내용 해시 (아니면 null)
+
+    // 영상(MP4 계열) 메타데이터, 없으면 null
+    public Long durationMs;
+    public Integer width;
+    public Integer height;
+    public String videoCodec;
 }
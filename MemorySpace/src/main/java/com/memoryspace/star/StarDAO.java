@@ -1,9 +1,13 @@
 package com.memoryspace.star;
 
 import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.media.UploadConfig;
+import com.memoryspace.storage.BlobRefDao;
+import com.memoryspace.storage.StorageUsageDao;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * StarDTO에 대한 데이터베이스 접근 객체(DAO)입니다.
@@ -13,6 +17,9 @@ public class StarDAO {
 
     private static final int MAX_STARS = 12; // 최대 별 개수 제한
 
+    private final StorageUsageDao storage = new StorageUsageDao();
+    private final BlobRefDao blobRefs = new BlobRefDao();
+
     /**
      * username(String)을 통해 users 테이블의 id(Long)를 조회
      * @param username 조회할 사용자 이름
@@ -44,7 +51,7 @@ public class StarDAO {
         List<StarDTO> stars = new ArrayList<>();
         String sql = "SELECT id, userId, name FROM stars WHERE userId = ? ORDER BY id ASC";
 
-        try (Connection conn = DBConnectionUtil.getConnection();
+        try (Connection conn = DBConnectionUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setLong(1, userId);
@@ -97,16 +104,44 @@ public class StarDAO {
      * @param starId 삭제할 별 ID
      * @param userId 삭제를 요청한 사용자 ID
      * @return 성공 여부
+     * 행성/미디어는 FK cascade로 같이 지워지므로, 같은 트랜잭션에서 살아있던 미디어만큼 저장 용량을 뺀다.
      */
     public boolean deleteStar(Long starId, Long userId) {
+        String lockSql = "SELECT id FROM stars WHERE id = ? AND userId = ? FOR UPDATE";
         String sql = "DELETE FROM stars WHERE id = ? AND userId = ?";
-        try (Connection conn = DBConnectionUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DBConnectionUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement lock = conn.prepareStatement(lockSql);
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                lock.setLong(1, starId);
+                lock.setLong(2, userId);
+                try (ResultSet rs = lock.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return false;
+                    }
+                }
+                long[] live = storage.liveUsageOfStar(conn, starId);
+                Map<String, Integer> refs = blobRefs.liveRefsOfStar(conn, starId, UploadConfig.PUBLIC_PREFIX);
+
+                pstmt.setLong(1, starId);
+                pstmt.setLong(2, userId);
+                if (pstmt.executeUpdate() != 1) {
+                    conn.rollback();
+                    return false;
+                }
 
-            pstmt.setLong(1, starId);
-            pstmt.setLong(2, userId);
-            
-            return pstmt.executeUpdate() == 1;
+                storage.add(conn, userId, -live[0], (int) -live[1]);
+                blobRefs.release(conn, refs);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
         } catch (SQLException e) {
             System.err.println("Error deleting star ID: " + starId + " by user ID: " + userId);
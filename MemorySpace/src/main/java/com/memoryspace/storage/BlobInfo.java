@@ -0,0 +1,11 @@
+package com.memoryspace.storage;
+
+import java.nio.file.Path;
+
+/** 저장된 blob 하나의 메타데이터. */
+public class BlobInfo {
+    public String name;
+    public long size;
+    public long lastModified; // epoch millis
+    public Path path;         // 로컬 파일이면 실제 경로, 아니면 null
+}
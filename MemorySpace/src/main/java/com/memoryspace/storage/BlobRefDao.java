@@ -0,0 +1,108 @@
+package com.memoryspace.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * media_blobs 참조 카운트. refCount = 이 파일을 가리키는 살아있는 planet_media 행 수 (미디어/행성 모두 삭제 안 됨).
+ *
+ * planet_media 행을 INSERT/교체/삭제하는 같은 트랜잭션 안에서 호출한다.
+ * 행성/별/회원 삭제는 상태를 바꾸기 전에 liveRefsOf*()로 그 아래 살아있는 행의 참조를 모아 두고, 삭제되면 release()로 한꺼번에 놓는다.
+ * 내용 주소 이름이 아닌 예전 UUID 파일(media_blobs 행 없음)은 decrement가 아무 일도 하지 않는다.
+ */
+public class BlobRefDao {
+
+    /** 업로드 URL(/uploads/<name>)에서 blob 이름. 다른 형태면 null */
+    public static String nameFromUrl(String url, String publicPrefix) {
+        if (url == null || !url.startsWith(publicPrefix)) return null;
+        String name = url.substring(publicPrefix.length());
+        return name.isEmpty() ? null : name;
+    }
+
+    /** 새 참조 하나씩 (없던 blob이면 refCount=1로 생성). names와 sha256s, sizes는 같은 순서. */
+    public void increment(Connection con, List<String> names, List<String> sha256s, List<Long> sizes) throws SQLException {
+        if (names.isEmpty()) return;
+
+        try (PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO media_blobs (name, sha256, sizeBytes, refCount) VALUES (?,?,?,1) " +
+                "ON DUPLICATE KEY UPDATE refCount = refCount + 1, unreferencedAt = NULL")) {
+            for (int i = 0; i < names.size(); i++) {
+                ps.setString(1, names.get(i));
+                ps.setString(2, sha256s.get(i));
+                ps.setLong(3, sizes.get(i).longValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /** 참조 하나 해제. 0이 되면 unreferencedAt을 찍어 GC 유예를 시작한다. */
+    public void decrement(Connection con, String name) throws SQLException {
+        if (name == null) return;
+
+        Map<String, Integer> one = new LinkedHashMap<String, Integer>();
+        one.put(name, 1);
+        release(con, one);
+    }
+
+    /** 행성의 살아있는 미디어가 가진 참조 {name -> 개수}. 행성 soft delete 전에 호출 */
+    public Map<String, Integer> liveRefsOfPlanet(Connection con, long planetId, String publicPrefix) throws SQLException {
+        return collect(con,
+                "SELECT m.url, COUNT(*) FROM planet_media m JOIN planets p ON p.id = m.planetId " +
+                "WHERE m.planetId=? AND m.isDeleted=0 AND p.isDeleted=0 GROUP BY m.url", planetId, publicPrefix);
+    }
+
+    /** 별 삭제(행성/미디어 cascade) 전에 호출 */
+    public Map<String, Integer> liveRefsOfStar(Connection con, long starId, String publicPrefix) throws SQLException {
+        return collect(con,
+                "SELECT m.url, COUNT(*) FROM planet_media m JOIN planets p ON p.id = m.planetId " +
+                "WHERE p.starId=? AND p.isDeleted=0 AND m.isDeleted=0 GROUP BY m.url", starId, publicPrefix);
+    }
+
+    /** 회원 삭제(별/행성/미디어 cascade) 전에 호출 */
+    public Map<String, Integer> liveRefsOfUser(Connection con, long userId, String publicPrefix) throws SQLException {
+        return collect(con,
+                "SELECT m.url, COUNT(*) FROM planet_media m JOIN planets p ON p.id = m.planetId " +
+                "JOIN stars s ON s.id = p.starId " +
+                "WHERE s.userId=? AND p.isDeleted=0 AND m.isDeleted=0 GROUP BY m.url", userId, publicPrefix);
+    }
+
+    private Map<String, Integer> collect(Connection con, String sql, long id, String publicPrefix) throws SQLException {
+        Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = nameFromUrl(rs.getString(1), publicPrefix);
+                    if (name != null) counts.put(name, rs.getInt(2));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /** name마다 n개씩 해제. 0이 되면 unreferencedAt을 찍어 GC 유예를 시작한다 (이미 0이었으면 처음 시각 유지). */
+    public void release(Connection con, Map<String, Integer> counts) throws SQLException {
+        if (counts.isEmpty()) return;
+
+        // unreferencedAt을 먼저 두어 두 식 모두 갱신 전 refCount를 본다 (SET 적용 순서에 기대지 않음)
+        try (PreparedStatement ps = con.prepareStatement(
+                "UPDATE media_blobs SET " +
+                "unreferencedAt = CASE WHEN refCount - ? <= 0 THEN COALESCE(unreferencedAt, NOW()) ELSE NULL END, " +
+                "refCount = GREATEST(refCount - ?, 0) " +
+                "WHERE name=?")) {
+            for (Map.Entry<String, Integer> e : counts.entrySet()) {
+                ps.setInt(1, e.getValue().intValue());
+                ps.setInt(2, e.getValue().intValue());
+                ps.setString(3, e.getKey());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.memoryspace.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 업로드 파일 저장소. 이름은 /uploads/<name> 의 name 그대로다 (sha256.ext 또는 예전 UUID.ext).
+ *
+ * 기본 구현은 FileSystemBlobStore. 다른 구현은 memoryspace.blobstore.class로 지정한다 (BlobStores 참고).
+ */
+public interface BlobStore {
+
+    /** 없으면 null */
+    BlobInfo stat(String name) throws IOException;
+
+    /** 전체 내용. 없으면 NoSuchFileException */
+    InputStream open(String name) throws IOException;
+
+    /** offset부터 length 바이트. 범위가 파일 끝을 넘으면 파일 끝까지. */
+    InputStream openRange(String name, long offset, long length) throws IOException;
+
+    /**
+     * 로컬 파일 source를 name으로 넣는다 (source는 옮겨지거나 지워진다).
+     * 같은 이름이 이미 있으면 기존 것을 유지하고 false를 돌려준다 (내용 주소 이름이면 내용도 같다).
+     * 이때 기존 것의 수정 시각을 갱신해서 GC 유예가 다시 시작되게 한다.
+     */
+    boolean put(String name, Path source) throws IOException;
+
+    /** 지웠으면 true */
+    boolean delete(String name) throws IOException;
+
+    /**
+     * 저장된 blob을 저장소 고유 순서로 최대 limit개 out에 담는다 (GC 순회용).
+     * @param cursor 이전 호출이 돌려준 값, 처음이면 null
+     * @return 다음 호출에 넘길 cursor, 끝까지 봤으면 null
+     */
+    String list(String cursor, int limit, List<BlobInfo> out) throws IOException;
+}
@@ -0,0 +1,66 @@
+package com.memoryspace.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 예전 평면 구조(<root>/<name>) 파일을 샤딩 구조(<root>/ab/cd/<name>)로 옮기는 일회성 도구.
+ *
+ *   java -cp WEB-INF/classes com.memoryspace.storage.BlobStoreMigration [--dry-run] [root]
+ *
+ * 서비스 중에 실행해도 된다. 옮기는 동안에도 FileSystemBlobStore가 두 위치를 모두 찾기 때문이다.
+ * 같은 이름이 이미 샤딩 위치에 있으면 평면 파일은 그대로 두고 건너뛴다.
+ */
+public final class BlobStoreMigration {
+
+    private BlobStoreMigration() {}
+
+    public static void main(String[] args) throws IOException {
+        boolean dryRun = false;
+        String root = BlobStores.ROOT;
+        for (String a : args) {
+            if ("--dry-run".equals(a)) dryRun = true;
+            else root = a;
+        }
+
+        FileSystemBlobStore store = new FileSystemBlobStore(root);
+        long moved = 0, skipped = 0, failed = 0, bytes = 0;
+
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(store.getRoot())) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(".") || !Files.isRegularFile(p)) continue; // .staging, 샤드 디렉터리
+
+                Path dest = store.shardedPath(name);
+                if (Files.exists(dest)) {
+                    skipped++;
+                    continue;
+                }
+
+                long size = Files.size(p);
+                if (dryRun) {
+                    System.out.println("would move " + name + " -> " + store.getRoot().relativize(dest));
+                    moved++;
+                    bytes += size;
+                    continue;
+                }
+
+                try {
+                    Files.createDirectories(dest.getParent());
+                    Files.move(p, dest, StandardCopyOption.ATOMIC_MOVE);
+                    moved++;
+                    bytes += size;
+                } catch (IOException e) {
+                    failed++;
+                    System.err.println("failed " + name + ": " + e.getMessage());
+                }
+            }
+        }
+
+        System.out.println((dryRun ? "[dry-run] " : "") + "moved=" + moved + " bytes=" + bytes
+                + " skipped=" + skipped + " failed=" + failed);
+    }
+}
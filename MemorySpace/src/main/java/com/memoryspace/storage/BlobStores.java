@@ -0,0 +1,33 @@
+package com.memoryspace.storage;
+
+import java.io.File;
+
+/**
+ * 프로세스 전역 BlobStore.
+ *
+ * - memoryspace.upload.dir : 파일 저장 루트 (기본 ~/memoryspace_uploads)
+ * - memoryspace.blobstore.class : BlobStore 구현 클래스 (기본 FileSystemBlobStore, 인자 없는 생성자 필요)
+ */
+public final class BlobStores {
+
+    public static final String ROOT = System.getProperty("memoryspace.upload.dir",
+            System.getProperty("user.home") + File.separator + "memoryspace_uploads");
+
+    private static final BlobStore DEFAULT = create();
+
+    private BlobStores() {}
+
+    public static BlobStore get() {
+        return DEFAULT;
+    }
+
+    private static BlobStore create() {
+        String cls = System.getProperty("memoryspace.blobstore.class");
+        if (cls == null || cls.trim().isEmpty()) return new FileSystemBlobStore(ROOT);
+        try {
+            return (BlobStore) Class.forName(cls.trim()).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot create BlobStore " + cls, e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.memoryspace.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 업로드 파일을 복사하면서 SHA-256을 같이 계산한다 (내용 주소 저장용).
+ */
+public final class ContentHash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {}
+
+    /** in을 dest로 복사하고 내용의 SHA-256(hex 소문자)을 돌려준다. */
+    public static String copyAndHash(InputStream in, Path dest) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buf = new byte[64 * 1024];
+        try (OutputStream out = Files.newOutputStream(dest,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int r;
+            while ((r = in.read(buf)) != -1) {
+                md.update(buf, 0, r);
+                out.write(buf, 0, r);
+            }
+        }
+        return hex(md.digest());
+    }
+
+    /** 저장 파일명: 해시 + 확장자. 확장자는 Content-Type 추정(probeContentType)에 쓰인다. */
+    public static String blobName(String sha256, String ext) {
+        return sha256 + (ext == null || ext.isEmpty() ? "" : "." + ext);
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String hex(byte[] b) {
+        char[] out = new char[b.length * 2];
+        for (int i = 0; i < b.length; i++) {
+            out[i * 2] = HEX[(b[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[b[i] & 0xF];
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,267 @@
+package com.memoryspace.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 로컬 디스크 BlobStore. 해시 접두어 2단계 디렉터리로 나눠 저장한다.
+ *
+ *   <root>/ab/cd/abcd1234....jpg
+ *
+ * 이름이 16진수로 시작하면(sha256, UUID 이름) 그 앞 4글자를, 아니면 이름의 sha256 앞 4글자를 쓴다.
+ * 디렉터리당 파일 수가 (전체 / 65536)로 줄어서 조회/백업/ls가 느려지지 않는다.
+ *
+ * 마이그레이션 전 파일을 위해 <root>/<name> (예전 평면 구조)도 읽기/삭제 대상으로 본다.
+ */
+public class FileSystemBlobStore implements BlobStore {
+
+    private final Path root;
+
+    public FileSystemBlobStore(String root) {
+        this.root = Paths.get(root);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /** 샤딩된 위치 (파일 존재 여부와 무관) */
+    public Path shardedPath(String name) {
+        String key = isHexPrefix(name) ? name : ContentHash.hex(
+                ContentHash.newDigest().digest(name.getBytes(StandardCharsets.UTF_8)));
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(name);
+    }
+
+    /** 예전 평면 구조 위치 */
+    public Path legacyPath(String name) {
+        return root.resolve(name);
+    }
+
+    /** 실제 파일 위치 (샤딩 위치 우선, 없으면 예전 위치). 둘 다 없으면 null */
+    public Path locate(String name) {
+        checkName(name);
+        Path p = shardedPath(name);
+        if (Files.isRegularFile(p)) return p;
+        Path legacy = legacyPath(name);
+        if (Files.isRegularFile(legacy)) return legacy;
+        return null;
+    }
+
+    @Override
+    public BlobInfo stat(String name) throws IOException {
+        Path p = locate(name);
+        if (p == null) return null;
+
+        BasicFileAttributes a;
+        try {
+            a = Files.readAttributes(p, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null; // 그 사이 삭제됨
+        }
+
+        BlobInfo info = new BlobInfo();
+        info.name = name;
+        info.size = a.size();
+        info.lastModified = a.lastModifiedTime().toMillis();
+        info.path = p;
+        return info;
+    }
+
+    @Override
+    public InputStream open(String name) throws IOException {
+        Path p = locate(name);
+        if (p == null) throw new NoSuchFileException(name);
+        return Files.newInputStream(p);
+    }
+
+    @Override
+    public InputStream openRange(String name, long offset, long length) throws IOException {
+        Path p = locate(name);
+        if (p == null) throw new NoSuchFileException(name);
+
+        FileChannel ch = FileChannel.open(p, StandardOpenOption.READ);
+        try {
+            ch.position(offset);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(ch), length);
+    }
+
+    @Override
+    public boolean put(String name, Path source) throws IOException {
+        Path dest = shardedPath(checkName(name));
+        Path existing = Files.isRegularFile(dest) ? dest : legacyPath(name);
+        if (Files.isRegularFile(existing)) {
+            Files.deleteIfExists(source);
+            try {
+                Files.setLastModifiedTime(existing, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException ignored) {
+                // 그 사이 GC가 지웠으면 아래에서 새로 넣는다
+            }
+            if (Files.isRegularFile(existing)) return false;
+        }
+
+        Files.createDirectories(dest.getParent());
+        try {
+            Files.move(source, dest, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        checkName(name);
+        boolean a = Files.deleteIfExists(shardedPath(name));
+        boolean b = Files.deleteIfExists(legacyPath(name));
+        return a || b;
+    }
+
+    /**
+     * cursor: "0:<name>" 예전 평면 파일(이름순) 다음 "1:ab/cd/<name>" 샤딩 파일(경로순).
+     * 디렉터리는 정렬해서 읽으므로 cursor 이전 샤드는 목록만 보고 건너뛴다.
+     */
+    @Override
+    public String list(String cursor, int limit, List<BlobInfo> out) throws IOException {
+        if (!Files.isDirectory(root)) return null;
+        String last = cursor;
+
+        List<Path> top = sortedChildren(root);
+        if (cursor == null || cursor.startsWith("0:")) {
+            String after = cursor == null ? null : cursor.substring(2);
+            for (Path p : top) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(".") || !Files.isRegularFile(p)) continue;
+                if (after != null && name.compareTo(after) <= 0) continue;
+                if (out.size() >= limit) return last;
+                if (add(p, name, out)) last = "0:" + name;
+            }
+            cursor = null;
+        }
+
+        String after = cursor == null ? null : cursor.substring(2);
+        for (Path d1 : top) {
+            String n1 = d1.getFileName().toString();
+            if (n1.length() != 2 || !Files.isDirectory(d1)) continue;
+            if (after != null && n1.compareTo(after.substring(0, 2)) < 0) continue;
+
+            for (Path d2 : sortedChildren(d1)) {
+                String prefix = n1 + "/" + d2.getFileName();
+                if (!Files.isDirectory(d2)) continue;
+                if (after != null && prefix.compareTo(after.substring(0, 5)) < 0) continue;
+
+                for (Path f : sortedChildren(d2)) {
+                    String name = f.getFileName().toString();
+                    String rel = prefix + "/" + name;
+                    if (after != null && rel.compareTo(after) <= 0) continue;
+                    if (out.size() >= limit) return last;
+                    if (add(f, name, out)) last = "1:" + rel;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean add(Path p, String name, List<BlobInfo> out) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+            if (!a.isRegularFile()) return false;
+            BlobInfo info = new BlobInfo();
+            info.name = name;
+            info.size = a.size();
+            info.lastModified = a.lastModifiedTime().toMillis();
+            info.path = p;
+            out.add(info);
+            return true;
+        } catch (IOException e) {
+            return false; // 그 사이 삭제됨
+        }
+    }
+
+    private static List<Path> sortedChildren(Path dir) throws IOException {
+        List<Path> out = new ArrayList<Path>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) out.add(p);
+        } catch (NoSuchFileException e) {
+            return out;
+        }
+        Collections.sort(out);
+        return out;
+    }
+
+    private static String checkName(String name) {
+        if (name == null || name.isEmpty() || name.startsWith(".")
+                || name.contains("/") || name.contains("\\") || name.contains("..")) {
+            throw new IllegalArgumentException("Invalid blob name: " + name);
+        }
+        return name;
+    }
+
+    private static boolean isHexPrefix(String name) {
+        if (name.length() < 4) return false;
+        for (int i = 0; i < 4; i++) {
+            char c = name.charAt(i);
+            boolean hex = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+            if (!hex) return false;
+        }
+        return true;
+    }
+
+    /** 남은 바이트 수를 넘겨 읽지 않는 스트림 */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long s = super.skip(Math.min(n, remaining));
+            remaining -= s;
+            return s;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
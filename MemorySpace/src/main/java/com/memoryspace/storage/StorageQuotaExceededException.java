@@ -0,0 +1,24 @@
+package com.memoryspace.storage;
+
+/**
+ * 업로드가 사용자 저장 용량(quota)을 넘을 때. 트랜잭션은 롤백되어야 한다.
+ */
+public class StorageQuotaExceededException extends Exception {
+
+    private final long usedBytes;
+    private final long quotaBytes;
+
+    public StorageQuotaExceededException(long usedBytes, long quotaBytes) {
+        super("Storage quota exceeded (" + usedBytes + " / " + quotaBytes + " bytes used)");
+        this.usedBytes = usedBytes;
+        this.quotaBytes = quotaBytes;
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getQuotaBytes() {
+        return quotaBytes;
+    }
+}
@@ -0,0 +1,201 @@
+package com.memoryspace.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 사용자별(user_storage) / 전체(storage_totals) 저장 용량 카운터.
+ *
+ * 살아있는 미디어(미디어와 소속 행성 모두 삭제 안 됨)의 planet_media.sizeBytes 합계를 유지한다.
+ * 미디어를 INSERT/교체/삭제하는 같은 트랜잭션 안에서 호출해서, 커밋되면 카운터도 같이 반영된다.
+ * (내용 주소로 파일을 공유해도 사용자에게는 행 단위 크기로 계산한다)
+ *
+ * 전체 합계는 한 행에 몰리면 모든 업로드 트랜잭션이 그 행 잠금에서 줄을 서므로
+ * userId % TOTAL_SLOTS 로 나눈 여러 행에 더하고, 읽을 때 합친다 (행 수가 고정이라 O(1)).
+ */
+public class StorageUsageDao {
+
+    public static final int TOTAL_SLOTS = 16;
+
+    // 사용자별 quotaBytes가 NULL이면 이 값 (0 이하면 제한 없음)
+    public static final long DEFAULT_QUOTA_BYTES =
+            Long.getLong("memoryspace.storage.defaultQuotaBytes", 2L * 1024 * 1024 * 1024);
+
+    // 관리자 대시보드의 전체 용량
+    public static final long TOTAL_CAPACITY_BYTES =
+            Long.getLong("memoryspace.storage.totalBytes", 10L * 1024 * 1024 * 1024);
+
+    private static final long PRECHECK_SLACK_BYTES = 64 * 1024;
+
+    /** 행성 소유자 userId, 없으면 -1 */
+    public long ownerOfPlanet(Connection con, long planetId) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT s.userId FROM planets p JOIN stars s ON s.id = p.starId WHERE p.id=?")) {
+            ps.setLong(1, planetId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * bytes만큼 늘린다. 사용자 행을 잠그고 용량을 넘으면 아무것도 바꾸지 않고 예외를 던진다.
+     * 같은 사용자의 동시 업로드는 이 잠금에서 차례로 확인된다.
+     */
+    public void reserve(Connection con, long userId, long bytes, int count)
+            throws SQLException, StorageQuotaExceededException {
+        ensureRow(con, userId);
+
+        long used, quota;
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT usedBytes, quotaBytes FROM user_storage WHERE userId=? FOR UPDATE")) {
+            ps.setLong(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("user_storage row missing: " + userId);
+                used = rs.getLong(1);
+                long q = rs.getLong(2);
+                quota = rs.wasNull() ? DEFAULT_QUOTA_BYTES : q;
+            }
+        }
+        if (bytes > 0 && quota > 0 && used + bytes > quota) {
+            throw new StorageQuotaExceededException(used, quota);
+        }
+
+        add(con, userId, bytes, count);
+    }
+
+    /**
+     * 제한 없이 더한다 (삭제는 음수). 0 아래로는 내려가지 않는다.
+     * 전체 합계에는 사용자 행이 실제로 바뀐 만큼만 더해서 두 테이블이 같은 값으로 맞춰진다.
+     */
+    public void add(Connection con, long userId, long bytes, int count) throws SQLException {
+        if (bytes == 0 && count == 0) return;
+        ensureRow(con, userId);
+
+        long used;
+        int media;
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT usedBytes, mediaCount FROM user_storage WHERE userId=? FOR UPDATE")) {
+            ps.setLong(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) throw new SQLException("user_storage row missing: " + userId);
+                used = rs.getLong(1);
+                media = rs.getInt(2);
+            }
+        }
+
+        long newUsed = Math.max(used + bytes, 0);
+        int newMedia = Math.max(media + count, 0);
+        try (PreparedStatement ps = con.prepareStatement(
+                "UPDATE user_storage SET usedBytes=?, mediaCount=? WHERE userId=?")) {
+            ps.setLong(1, newUsed);
+            ps.setInt(2, newMedia);
+            ps.setLong(3, userId);
+            ps.executeUpdate();
+        }
+        addTotals(con, userId, newUsed - used, newMedia - media);
+    }
+
+    /**
+     * 회원 삭제 직전에 호출. 사용자 행은 FK cascade로 지워지므로 전체 합계에서만 뺀다.
+     */
+    public void removeUser(Connection con, long userId) throws SQLException {
+        long used = 0;
+        int count = 0;
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT usedBytes, mediaCount FROM user_storage WHERE userId=? FOR UPDATE")) {
+            ps.setLong(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return;
+                used = rs.getLong(1);
+                count = rs.getInt(2);
+            }
+        }
+        addTotals(con, userId, -used, -count);
+    }
+
+    /** 행성에 있는 살아있는 미디어의 {바이트, 개수}. 행성이 이미 삭제됐으면 {0, 0}. */
+    public long[] liveUsageOfPlanet(Connection con, long planetId) throws SQLException {
+        return sum(con,
+                "SELECT COALESCE(SUM(m.sizeBytes),0), COUNT(m.id) FROM planet_media m " +
+                "JOIN planets p ON p.id = m.planetId " +
+                "WHERE m.planetId=? AND m.isDeleted=0 AND p.isDeleted=0", planetId);
+    }
+
+    /** 별에 속한 (삭제 안 된 행성의) 살아있는 미디어의 {바이트, 개수}. */
+    public long[] liveUsageOfStar(Connection con, long starId) throws SQLException {
+        return sum(con,
+                "SELECT COALESCE(SUM(m.sizeBytes),0), COUNT(m.id) FROM planet_media m " +
+                "JOIN planets p ON p.id = m.planetId " +
+                "WHERE p.starId=? AND p.isDeleted=0 AND m.isDeleted=0", starId);
+    }
+
+    /**
+     * 본문을 받기 전 빠른 확인. bytes(보통 Content-Length)를 더해도 용량 안이면 true.
+     * 멀티파트 헤더 등 부가 바이트만큼은 봐주고, 정확한 확인은 reserve()에서 한다.
+     */
+    public boolean fits(Connection con, long userId, long bytes) throws SQLException {
+        if (bytes <= 0) return true;
+        long[] u = usageOf(con, userId);
+        return u[1] <= 0 || u[0] + bytes <= u[1] + PRECHECK_SLACK_BYTES;
+    }
+
+    /** 사용자 {usedBytes, quotaBytes(기본값 반영)} */
+    public long[] usageOf(Connection con, long userId) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT usedBytes, quotaBytes FROM user_storage WHERE userId=?")) {
+            ps.setLong(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return new long[] { 0, DEFAULT_QUOTA_BYTES };
+                long used = rs.getLong(1);
+                long q = rs.getLong(2);
+                return new long[] { used, rs.wasNull() ? DEFAULT_QUOTA_BYTES : q };
+            }
+        }
+    }
+
+    /** 전체 {usedBytes, mediaCount} (TOTAL_SLOTS 행 합계) */
+    public long[] totals(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT COALESCE(SUM(usedBytes),0), COALESCE(SUM(mediaCount),0) FROM storage_totals");
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return new long[] { rs.getLong(1), rs.getLong(2) };
+        }
+    }
+
+    private void ensureRow(Connection con, long userId) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(
+                "INSERT IGNORE INTO user_storage (userId, usedBytes, mediaCount) VALUES (?,0,0)")) {
+            ps.setLong(1, userId);
+            ps.executeUpdate();
+        }
+    }
+
+    private void addTotals(Connection con, long userId, long bytes, int count) throws SQLException {
+        if (bytes == 0 && count == 0) return;
+
+        try (PreparedStatement ps = con.prepareStatement(
+                "INSERT INTO storage_totals (slot, usedBytes, mediaCount) VALUES (?,?,?) " +
+                "ON DUPLICATE KEY UPDATE usedBytes = usedBytes + ?, mediaCount = mediaCount + ?")) {
+            ps.setInt(1, (int) Math.floorMod(userId, (long) TOTAL_SLOTS));
+            ps.setLong(2, bytes);
+            ps.setInt(3, count);
+            ps.setLong(4, bytes);
+            ps.setInt(5, count);
+            ps.executeUpdate();
+        }
+    }
+
+    private static long[] sum(Connection con, String sql, long id) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return new long[] { rs.getLong(1), rs.getLong(2) };
+            }
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.memoryspace.user;
 
 import com.memoryspace.db.DBConnectionUtil;
+import com.memoryspace.media.UploadConfig;
+import com.memoryspace.storage.BlobRefDao;
+import com.memoryspace.storage.StorageUsageDao;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Map;
 
 public class UserDAO {
 
+    private final StorageUsageDao storage = new StorageUsageDao();
+    private final BlobRefDao blobRefs = new BlobRefDao();
+
     // 로그인 체크 (username + passwordHash)
     public boolean checkLogin(String username, String password) {
         String sql = "SELECT COUNT(*) FROM users WHERE username = ? AND passwordHash = ?";
@@ -202,16 +209,43 @@ public class UserDAO {
     }
 
     // 회원 탈퇴 (실제 삭제)
+    // user_storage 행은 cascade로 지워지므로 같은 트랜잭션에서 전체 용량 합계에서만 뺀다
     public boolean deleteUser(String username) {
-        String sql = "DELETE FROM users WHERE username = ?";
-
-        try (Connection conn = DBConnectionUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        String idSql = "SELECT id FROM users WHERE username = ? FOR UPDATE";
+        String sql = "DELETE FROM users WHERE id = ?";
+
+        try (Connection conn = DBConnectionUtil.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement idStmt = conn.prepareStatement(idSql);
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                long userId;
+                idStmt.setString(1, username);
+                try (ResultSet rs = idStmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return false;
+                    }
+                    userId = rs.getLong(1);
+                }
 
-            pstmt.setString(1, username);
+                storage.removeUser(conn, userId);
+                Map<String, Integer> refs = blobRefs.liveRefsOfUser(conn, userId, UploadConfig.PUBLIC_PREFIX);
 
-            int rows = pstmt.executeUpdate();
-            return rows == 1;
+                pstmt.setLong(1, userId);
+                if (pstmt.executeUpdate() != 1) {
+                    conn.rollback();
+                    return false;
+                }
+                blobRefs.release(conn, refs);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
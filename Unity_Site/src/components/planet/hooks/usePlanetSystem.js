@@ -188,7 +188,8 @@ export default function usePlanetSystem(starId) {
     if (items.length === 0) return [];
 
     const ctx = getContextPath();
-    const url = `${ctx}/api/media/add`;
+    // planetId는 쿼리에도 붙인다 (서버가 본문을 받기 전에 소유자/용량을 확인)
+    const url = `${ctx}/api/media/add?planetId=${encodeURIComponent(String(dbId))}`;
 
     const fd = new FormData();
     fd.append("planetId", String(dbId));
@@ -15,6 +15,9 @@ CREATE DATABASE IF NOT EXISTS memoryspace
 USE memoryspace;
 
 -- 기존 테이블 정리(드롭 순서 주의)
+DROP TABLE IF EXISTS storage_totals;
+DROP TABLE IF EXISTS user_storage;
+DROP TABLE IF EXISTS media_blobs;
 DROP TABLE IF EXISTS media_reports;
 DROP TABLE IF EXISTS media_favorites;
 DROP TABLE IF EXISTS media_likes;
@@ -109,9 +112,16 @@ CREATE TABLE planet_media (
   planetId BIGINT UNSIGNED NOT NULL,
   type ENUM('image','video') NOT NULL,
   url VARCHAR(1024) NOT NULL,              -- 접근 URL (예: /uploads/... 또는 CDN URL)
+  thumbUrl VARCHAR(1024) NULL,             -- 썸네일 파생본 URL (이미지, 생성 전이면 NULL)
+  displayUrl VARCHAR(1024) NULL,           -- 표시용 파생본 URL (이미지, 생성 전이면 NULL)
+  variantStatus ENUM('pending','ready','failed') NOT NULL DEFAULT 'pending',
   originalName VARCHAR(255) NULL,
   mimeType VARCHAR(100) NULL,
   sizeBytes BIGINT UNSIGNED NOT NULL DEFAULT 0,
+  durationMs BIGINT UNSIGNED NULL,         -- 영상 재생 시간 (MP4 mvhd)
+  width INT UNSIGNED NULL,                 -- 영상 표시 해상도 (회전 반영)
+  height INT UNSIGNED NULL,
+  videoCodec VARCHAR(16) NULL,             -- avc1 / hvc1 / av01 ...
   description TEXT NULL,
   locationName VARCHAR(255) NULL,
   latitude DOUBLE NULL,
@@ -122,6 +132,8 @@ CREATE TABLE planet_media (
   deletedAt DATETIME NULL,
   PRIMARY KEY (id),
   INDEX idx_media_planet (planetId, isDeleted, createdAt),
+  INDEX idx_media_url (url(191)),           -- 같은 파일을 공유하는 행 찾기 (파생본 기록, blob GC)
+  INDEX idx_media_variant (variantStatus, id),
   CONSTRAINT fk_media_planet
     FOREIGN KEY (planetId) REFERENCES planets(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -226,3 +238,42 @@ CREATE TABLE media_reports (
   CONSTRAINT fk_reports_processed_by
     FOREIGN KEY (processedByUserId) REFERENCES users(id) ON DELETE SET NULL
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- =========================================================
+-- 12) MEDIA_BLOBS (내용 주소 파일 저장소 참조 카운트)
+-- - 같은 내용의 업로드는 파일 하나를 공유한다
+-- =========================================================
+CREATE TABLE IF NOT EXISTS media_blobs (
+  name VARCHAR(100) NOT NULL,              -- 저장 파일명 = sha256(hex) + 확장자, url은 /uploads/<name>
+  sha256 CHAR(64) NOT NULL,
+  sizeBytes BIGINT UNSIGNED NOT NULL DEFAULT 0,
+  refCount INT NOT NULL DEFAULT 0,         -- 이 파일을 가리키는 살아있는 planet_media 행 수 (미디어/행성 삭제 시 감소)
+  createdAt DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  unreferencedAt DATETIME NULL,            -- refCount가 0이 된 시각 (GC 유예 기준)
+  PRIMARY KEY (name),
+  INDEX idx_blobs_unref (refCount, unreferencedAt)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- =========================================================
+-- 13) USER_STORAGE / STORAGE_TOTALS (저장 용량 카운터 + 사용자별 quota)
+-- - 살아있는 미디어(미디어/행성 모두 삭제 안 됨)의 sizeBytes 합계
+-- - 미디어 INSERT/교체/삭제와 같은 트랜잭션에서 갱신 (StorageUsageDao)
+-- - storage_totals는 업로드끼리 한 행 잠금을 다투지 않도록 userId % 16 슬롯으로 나눈다
+-- =========================================================
+CREATE TABLE IF NOT EXISTS user_storage (
+  userId BIGINT UNSIGNED NOT NULL,
+  usedBytes BIGINT NOT NULL DEFAULT 0,
+  mediaCount INT NOT NULL DEFAULT 0,
+  quotaBytes BIGINT NULL,                  -- NULL이면 기본값(memoryspace.storage.defaultQuotaBytes), 0 이하는 무제한
+  updatedAt DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (userId),
+  CONSTRAINT fk_user_storage_user
+    FOREIGN KEY (userId) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS storage_totals (
+  slot TINYINT UNSIGNED NOT NULL,
+  usedBytes BIGINT NOT NULL DEFAULT 0,
+  mediaCount BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (slot)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,34 @@
+/* =====================================================
+   기존 DB에 내용 주소(content-addressed) 업로드 저장용 테이블 추가
+   - DB_Frame.sql 12) MEDIA_BLOBS 와 동일
+   - 아래 재계산 부분은 다시 실행해도 된다 (삭제가 refCount에 반영되기 전에 쌓인 값 보정)
+   ===================================================== */
+
+USE memoryspace;
+
+CREATE TABLE IF NOT EXISTS media_blobs (
+  name VARCHAR(100) NOT NULL,              -- 저장 파일명 = sha256(hex) + 확장자, url은 /uploads/<name>
+  sha256 CHAR(64) NOT NULL,
+  sizeBytes BIGINT UNSIGNED NOT NULL DEFAULT 0,
+  refCount INT NOT NULL DEFAULT 0,         -- 이 파일을 가리키는 살아있는 planet_media 행 수 (미디어/행성 삭제 시 감소)
+  createdAt DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  unreferencedAt DATETIME NULL,            -- refCount가 0이 된 시각 (GC 유예 기준)
+  PRIMARY KEY (name),
+  INDEX idx_blobs_unref (refCount, unreferencedAt)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- refCount 재계산 (업로드/삭제가 없는 시간에 실행)
+START TRANSACTION;
+
+UPDATE media_blobs b
+  LEFT JOIN (
+        SELECT SUBSTRING(m.url, CHAR_LENGTH('/uploads/') + 1) AS name, COUNT(*) AS cnt
+          FROM planet_media m
+          JOIN planets p ON p.id = m.planetId
+         WHERE m.isDeleted = 0 AND p.isDeleted = 0 AND m.url LIKE '/uploads/%'
+         GROUP BY m.url
+       ) r ON r.name = b.name
+   SET b.unreferencedAt = IF(COALESCE(r.cnt, 0) = 0, COALESCE(b.unreferencedAt, NOW()), NULL),
+       b.refCount = COALESCE(r.cnt, 0);
+
+COMMIT;
@@ -0,0 +1,15 @@
+/* =====================================================
+   기존 DB에 이미지 파생본(썸네일/표시용) 컬럼 추가
+   - DB_Frame.sql 5) PLANET_MEDIA 와 동일
+   - 추가 후 기존 이미지는 variantStatus='pending'이 되므로
+     com.memoryspace.media.ImageDerivativeBackfill 로 채운다
+   ===================================================== */
+
+USE memoryspace;
+
+ALTER TABLE planet_media
+  ADD COLUMN thumbUrl VARCHAR(1024) NULL AFTER url,
+  ADD COLUMN displayUrl VARCHAR(1024) NULL AFTER thumbUrl,
+  ADD COLUMN variantStatus ENUM('pending','ready','failed') NOT NULL DEFAULT 'pending' AFTER displayUrl,
+  ADD INDEX idx_media_url (url(191)),
+  ADD INDEX idx_media_variant (variantStatus, id);
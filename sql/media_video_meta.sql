@@ -0,0 +1,13 @@
+/* =====================================================
+   기존 DB에 영상 메타데이터 컬럼 추가
+   - DB_Frame.sql 5) PLANET_MEDIA 와 동일
+   - 업로드 시 MP4(moov)에서 읽어 채운다. 기존 행은 NULL로 남는다.
+   ===================================================== */
+
+USE memoryspace;
+
+ALTER TABLE planet_media
+  ADD COLUMN durationMs BIGINT UNSIGNED NULL AFTER sizeBytes,
+  ADD COLUMN width INT UNSIGNED NULL AFTER durationMs,
+  ADD COLUMN height INT UNSIGNED NULL AFTER width,
+  ADD COLUMN videoCodec VARCHAR(16) NULL AFTER height;
@@ -0,0 +1,49 @@
+/* =====================================================
+   기존 DB에 저장 용량 카운터 테이블 추가 + 현재 데이터로 다시 계산
+   - DB_Frame.sql 13) USER_STORAGE / STORAGE_TOTALS 와 동일
+   - 아래 재계산 부분은 다시 실행해도 된다 (DataSet.sql 적재 후 등)
+     quotaBytes는 유지하고 usedBytes/mediaCount만 다시 채운다
+   ===================================================== */
+
+USE memoryspace;
+
+CREATE TABLE IF NOT EXISTS user_storage (
+  userId BIGINT UNSIGNED NOT NULL,
+  usedBytes BIGINT NOT NULL DEFAULT 0,
+  mediaCount INT NOT NULL DEFAULT 0,
+  quotaBytes BIGINT NULL,                  -- NULL이면 기본값(memoryspace.storage.defaultQuotaBytes), 0 이하는 무제한
+  updatedAt DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+  PRIMARY KEY (userId),
+  CONSTRAINT fk_user_storage_user
+    FOREIGN KEY (userId) REFERENCES users(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS storage_totals (
+  slot TINYINT UNSIGNED NOT NULL,
+  usedBytes BIGINT NOT NULL DEFAULT 0,
+  mediaCount BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (slot)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- 재계산 (업로드가 없는 시간에 실행)
+START TRANSACTION;
+
+UPDATE user_storage SET usedBytes = 0, mediaCount = 0;
+
+INSERT INTO user_storage (userId, usedBytes, mediaCount)
+SELECT s.userId, COALESCE(SUM(m.sizeBytes), 0), COUNT(m.id)
+  FROM planet_media m
+  JOIN planets p ON p.id = m.planetId
+  JOIN stars s ON s.id = p.starId
+ WHERE m.isDeleted = 0 AND p.isDeleted = 0
+ GROUP BY s.userId
+ON DUPLICATE KEY UPDATE usedBytes = VALUES(usedBytes), mediaCount = VALUES(mediaCount);
+
+DELETE FROM storage_totals;
+
+INSERT INTO storage_totals (slot, usedBytes, mediaCount)
+SELECT userId % 16, SUM(usedBytes), SUM(mediaCount)
+  FROM user_storage
+ GROUP BY userId % 16;
+
+COMMIT;